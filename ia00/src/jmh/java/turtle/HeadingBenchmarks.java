@@ -0,0 +1,61 @@
+package turtle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the turtle's heading math: integer turns use the lookup table,
+ * fractional turns fall back to Math.sin and Math.cos.  Retention is off so that only
+ * the movement itself is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HeadingBenchmarks {
+
+    @Param({"1000000"})
+    public int moves;
+
+    @Param({"false", "true"})
+    public boolean compensated;
+
+    private Turtle newTurtle() {
+        Turtle t = new Turtle();
+        t.setRetainSegments(false);
+        t.setCompensatedSummation(compensated);
+        return t;
+    }
+
+    @Benchmark
+    public double integerTurns() {
+        Turtle t = newTurtle();
+        for( int i = 0; i < moves; i++ ) {
+            t.forward(2.0);
+            t.turn(89);
+        }
+        return t.getLocation().x;
+    }
+
+    @Benchmark
+    public double fractionalTurns() {
+        Turtle t = newTurtle();
+        for( int i = 0; i < moves; i++ ) {
+            t.forward(2.0);
+            t.turn(89.5);
+        }
+        return t.getLocation().x;
+    }
+}
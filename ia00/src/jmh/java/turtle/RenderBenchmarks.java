@@ -0,0 +1,71 @@
+package turtle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for rasterizing a large drawing into an offscreen image.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class RenderBenchmarks {
+
+    private static final int SIZE = 800;
+
+    @Param({"200000"})
+    public int segments;
+
+    private SegmentStore store;
+    private BufferedImage image;
+    private Graphics2D g;
+    private TurtleRasterizer rasterizer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        store = TurtleBenchmarks.spiral(segments).getSegments();
+        image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        g = image.createGraphics();
+        rasterizer = new TurtleRasterizer(SIZE, SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage perSegment() {
+        BatchedPathRenderer.drawPerSegment(g, store, SIZE, SIZE);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage batchedPaths() {
+        BatchedPathRenderer.drawBatched(g, store, SIZE, SIZE);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage tiledRasterizer() {
+        return rasterizer.render(store);
+    }
+}
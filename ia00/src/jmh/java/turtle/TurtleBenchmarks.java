@@ -0,0 +1,97 @@
+package turtle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for generating segments with a Turtle and for reading them back.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TurtleBenchmarks {
+
+    @Param({"100000"})
+    public int segments;
+
+    private Turtle drawn;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        drawn = spiral(segments);
+    }
+
+    static Turtle spiral( int count ) {
+        Turtle t = new Turtle();
+        PenColor[] colors = PenColor.values();
+        for( int i = 0; i < count; i++ ) {
+            if( i % 1000 == 0 ) t.setPen(colors[(i / 1000) % colors.length]);
+            t.forward(1.0 + (i % 300));
+            t.turn(121.0);
+        }
+        return t;
+    }
+
+    @Benchmark
+    public Turtle forwardTurnLoop() {
+        Turtle t = new Turtle();
+        for( int i = 0; i < segments; i++ ) {
+            t.forward(3.0);
+            t.turn(7.0);
+        }
+        return t;
+    }
+
+    /** A circle of radius 300 approximated by a polygon with one side per segment. */
+    @Benchmark
+    public Turtle approximateCircle() {
+        Turtle t = new Turtle();
+        double side = 2.0 * 300.0 * Math.sin(Math.PI / segments);
+        double angle = 360.0 / segments;
+        for( int i = 0; i < segments; i++ ) {
+            t.forward(side);
+            t.turn(angle);
+        }
+        return t;
+    }
+
+    @Benchmark
+    public double iterateLines() {
+        double sum = 0.0;
+        for( LineSegment ls : drawn.getLines() ) {
+            sum += ls.getEnd().x - ls.getStart().x;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double iterateCursor() {
+        double sum = 0.0;
+        SegmentStore.Cursor cursor = drawn.getSegments().cursor();
+        while( cursor.next() ) {
+            sum += cursor.x1() - cursor.x0();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void iterateVisitor( Blackhole bh ) {
+        drawn.getSegments().forEach((i, color, x0, y0, x1, y1) -> bh.consume(x1 - x0));
+    }
+}
@@ -0,0 +1,144 @@
+package turtle;
+
+import java.awt.*;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws a complete set of segments with as few Java2D calls as possible.  Consecutive
+ * segments that share a pen color are joined into one Path2D polyline (with a new
+ * subpath wherever the segments are not connected), so the color is set and a shape
+ * is drawn once per batch instead of once per segment.
+ *
+ * Coordinates use the same transform as TurtleGUI: the origin is at the center of
+ * the canvas and the y axis points up.
+ */
+public class BatchedPathRenderer {
+
+    /** Batches are split at this size so that a single huge path doesn't stall the pipeline. */
+    private static final int MAX_BATCH_SEGMENTS = 8192;
+
+    private BatchedPathRenderer() { }
+
+    /**
+     * Draws all segments, one draw call per run of same-colored segments.
+     *
+     * @param g the graphics to draw on
+     * @param segments the segments to draw
+     * @param width the width of the canvas
+     * @param height the height of the canvas
+     * @return the number of draw calls issued
+     */
+    public static int drawBatched( Graphics2D g, SegmentStore segments, int width, int height ) {
+        int cx = width / 2, cy = height / 2;
+        Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO, 2 * MAX_BATCH_SEGMENTS + 2);
+        PenColor batchColor = null;
+        int batchSize = 0;
+        int drawCalls = 0;
+        double lastX = Double.NaN, lastY = Double.NaN;
+
+        SegmentStore.Cursor cursor = segments.cursor();
+        while( cursor.next() ) {
+            PenColor color = cursor.color();
+            if( color != batchColor || batchSize == MAX_BATCH_SEGMENTS ) {
+                if( batchSize > 0 ) {
+                    g.setColor(batchColor.asColor());
+                    g.draw(path);
+                    drawCalls++;
+                    path.reset();
+                    batchSize = 0;
+                }
+                batchColor = color;
+            }
+
+            double x0 = cursor.x0() + cx, y0 = height - (cursor.y0() + cy);
+            double x1 = cursor.x1() + cx, y1 = height - (cursor.y1() + cy);
+            if( batchSize == 0 || x0 != lastX || y0 != lastY ) path.moveTo(x0, y0);
+            path.lineTo(x1, y1);
+            lastX = x1;
+            lastY = y1;
+            batchSize++;
+        }
+        if( batchSize > 0 ) {
+            g.setColor(batchColor.asColor());
+            g.draw(path);
+            drawCalls++;
+        }
+        return drawCalls;
+    }
+
+    /**
+     * Draws all segments with one color change and one draw call per segment.  This is
+     * the way TurtleGUI draws during animation, and is kept as a baseline for comparison.
+     *
+     * @param g the graphics to draw on
+     * @param segments the segments to draw
+     * @param width the width of the canvas
+     * @param height the height of the canvas
+     */
+    public static void drawPerSegment( Graphics2D g, SegmentStore segments, int width, int height ) {
+        int cx = width / 2, cy = height / 2;
+        Line2D.Double line = new Line2D.Double();
+        SegmentStore.Cursor cursor = segments.cursor();
+        while( cursor.next() ) {
+            g.setColor(cursor.color().asColor());
+            line.setLine(cursor.x0() + cx, height - (cursor.y0() + cy),
+                    cursor.x1() + cx, height - (cursor.y1() + cy));
+            g.draw(line);
+        }
+    }
+
+    /**
+     * Times both ways of drawing the segments into an offscreen image.
+     *
+     * @param segments the segments to draw
+     * @param size the width and height of the image
+     * @param repetitions the number of timed runs of each method (after one warm-up run)
+     * @return the per-segment time divided by the batched time
+     */
+    public static double measureSpeedup( SegmentStore segments, int size, int repetitions ) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+
+        drawPerSegment(g, segments, size, size);
+        drawBatched(g, segments, size, size);
+
+        long perSegment = 0, batched = 0;
+        for( int i = 0; i < repetitions; i++ ) {
+            long start = System.nanoTime();
+            drawPerSegment(g, segments, size, size);
+            long mid = System.nanoTime();
+            drawBatched(g, segments, size, size);
+            batched += System.nanoTime() - mid;
+            perSegment += mid - start;
+        }
+        g.dispose();
+        return (double)perSegment / batched;
+    }
+
+    /**
+     * Reports the speedup of batched drawing on a large, multi-colored spiral.
+     * The optional argument is the number of segments.
+     */
+    public static void main( String[] args ) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Turtle t = new Turtle();
+        PenColor[] colors = PenColor.values();
+        for( int i = 0; i < count; i++ ) {
+            if( i % 1000 == 0 ) t.setPen(colors[(i / 1000) % colors.length]);
+            t.forward(1.0 + (i % 400));
+            t.turn(121.0);
+        }
+
+        SegmentStore segments = t.getSegments();
+        BufferedImage image = new BufferedImage(800, 800, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        int drawCalls = drawBatched(g, segments, 800, 800);
+        g.dispose();
+
+        double speedup = measureSpeedup(segments, 800, 5);
+        System.out.printf("%,d segments in %,d draw calls: batched drawing is %.2fx faster than per-segment%n",
+                segments.size(), drawCalls, speedup);
+    }
+}
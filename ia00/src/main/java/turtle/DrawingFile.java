@@ -0,0 +1,323 @@
+package turtle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A compact binary file format for turtle drawings, written through NIO channels and
+ * read back through memory-mapped buffers, so that drawings much larger than the heap can
+ * be replayed into a SegmentSink (a renderer, a SegmentStore, ...) without creating an
+ * object per segment.
+ *
+ * The file starts with a 24 byte header: the magic number, a version, the quantization
+ * scale (units per turtle unit) and the number of segments.  Coordinates are rounded to
+ * multiples of 1/scale, and each point is written as the difference from the previous
+ * point using zig-zag variable-length integers, so short moves take 2 to 4 bytes.
+ * Because the differences are between rounded absolute positions, rounding error never
+ * accumulates.
+ *
+ * Segments are grouped into runs that share a pen color.  Each run starts with a tag byte
+ * (the color ordinal, plus a flag if every segment in the run starts where the previous
+ * one ended) and a segment count.  A connected segment is stored as just the difference to
+ * its end point; any other segment stores its start and end.
+ */
+public class DrawingFile {
+
+    private static final int MAGIC = 0x54555254;   // "TURT"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int COUNT_OFFSET = 16;
+    private static final int CONNECTED = 0x80;
+    private static final int COLOR_MASK = 0x0F;
+    private static final int MAX_RUN = 4096;
+    private static final int MAX_VARINT = 10;
+    // A run header plus one unconnected segment
+    private static final int MAX_RECORD = 1 + MAX_VARINT + 4 * MAX_VARINT;
+    private static final long MAP_WINDOW = 1L << 30;
+
+    /** The default number of quantization steps per turtle unit. */
+    public static final double DEFAULT_SCALE = 1024.0;
+
+    private static final PenColor[] COLORS = PenColor.values();
+
+    private DrawingFile() { }
+
+    /**
+     * Writes all of the segments in a store to a file.
+     *
+     * @param segments the segments
+     * @param file the file to create or replace
+     * @throws IOException if the file can't be written
+     */
+    public static void write( SegmentStore segments, Path file ) throws IOException {
+        try( Writer writer = new Writer(file, DEFAULT_SCALE) ) {
+            SegmentStore.Cursor cursor = segments.cursor();
+            while( cursor.next() ) {
+                writer.write(cursor.color(), cursor.x0(), cursor.y0(), cursor.x1(), cursor.y1());
+            }
+        }
+    }
+
+    /**
+     * Reads a drawing into a new SegmentStore.
+     *
+     * @param file the drawing file
+     * @return the segments
+     * @throws IOException if the file can't be read or is not a drawing file
+     */
+    public static SegmentStore load( Path file ) throws IOException {
+        SegmentStore[] store = new SegmentStore[1];
+        replay(file, count -> {
+            if( count > Integer.MAX_VALUE ) throw new IOException("too many segments to load: " + count);
+            store[0] = new SegmentStore((int)count);
+            return store[0];
+        }, MAP_WINDOW);
+        return store[0];
+    }
+
+    /**
+     * Sends every segment of a drawing, in order, to a sink.  The file is memory-mapped
+     * a window at a time, so files of any size can be replayed.
+     *
+     * @param file the drawing file
+     * @param sink the sink
+     * @return the number of segments replayed
+     * @throws IOException if the file can't be read or is not a drawing file
+     */
+    public static long replay( Path file, SegmentSink sink ) throws IOException {
+        return replay(file, count -> sink, MAP_WINDOW);
+    }
+
+    // Replays with the given mapping window size, so that remapping can be tested
+    static long replay( Path file, SegmentSink sink, long window ) throws IOException {
+        return replay(file, count -> sink, window);
+    }
+
+    @FunctionalInterface
+    private interface SinkFactory {
+        SegmentSink create( long segmentCount ) throws IOException;
+    }
+
+    private static long replay( Path file, SinkFactory factory, long window ) throws IOException {
+        try( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ) ) {
+            MappedInput in = new MappedInput(channel, window);
+            in.ensure(HEADER_SIZE);
+            if( in.remaining() < HEADER_SIZE || in.buffer.getInt() != MAGIC )
+                throw new IOException("not a turtle drawing file: " + file);
+            short version = in.buffer.getShort();
+            if( version != VERSION ) throw new IOException("unsupported drawing file version " + version);
+            in.buffer.getShort();
+            double scale = in.buffer.getDouble();
+            long count = in.buffer.getLong();
+            if( count < 0 ) throw new IOException("corrupt drawing file: negative segment count " + count);
+            SegmentSink sink = factory.create(count);
+
+            double inv = 1.0 / scale;
+            long px = 0, py = 0;
+            long read = 0;
+            while( read < count ) {
+                in.ensure(MAX_RECORD);
+                int tag = in.buffer.get() & 0xFF;
+                int colorIndex = tag & COLOR_MASK;
+                if( colorIndex >= COLORS.length ) throw new IOException("corrupt drawing file: bad color " + colorIndex);
+                PenColor color = COLORS[colorIndex];
+                boolean connected = (tag & CONNECTED) != 0;
+                long run = readVarLong(in.buffer);
+                if( run <= 0 || run > count - read ) throw new IOException("corrupt drawing file: bad run length " + run);
+
+                for( long k = 0; k < run; k++ ) {
+                    in.ensure(4 * MAX_VARINT);
+                    long sx = px, sy = py;
+                    if( ! connected ) {
+                        sx += unzigzag(readVarLong(in.buffer));
+                        sy += unzigzag(readVarLong(in.buffer));
+                    }
+                    long ex = sx + unzigzag(readVarLong(in.buffer));
+                    long ey = sy + unzigzag(readVarLong(in.buffer));
+                    sink.accept(color, sx * inv, sy * inv, ex * inv, ey * inv);
+                    px = ex;
+                    py = ey;
+                }
+                read += run;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Writes segments to a drawing file as they arrive.  Close the writer to finish the file.
+     */
+    public static class Writer implements SegmentSink, Closeable {
+        private final FileChannel channel;
+        private final double scale;
+        private final ByteBuffer out = ByteBuffer.allocate(1 << 16);
+        private final ByteBuffer run = ByteBuffer.allocate(MAX_RUN * 4 * MAX_VARINT);
+        private long count = 0;
+        private long px = 0, py = 0;       // the end of the previous segment, quantized
+        private int runColor = -1;
+        private boolean runConnected;
+        private int runLength = 0;
+
+        /**
+         * Creates (or replaces) a drawing file.
+         *
+         * @param file the file
+         * @param scale the number of quantization steps per turtle unit
+         * @throws IOException if the file can't be created
+         */
+        public Writer( Path file, double scale ) throws IOException {
+            if( !(scale > 0.0) ) throw new IllegalArgumentException("scale must be positive");
+            this.scale = scale;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            out.putInt(MAGIC).putShort(VERSION).putShort((short)0).putDouble(scale).putLong(0L);
+        }
+
+        /**
+         * Writes one segment.
+         *
+         * @throws IOException if writing fails
+         */
+        public void write( PenColor color, double x0, double y0, double x1, double y1 ) throws IOException {
+            long sx = Math.round(x0 * scale), sy = Math.round(y0 * scale);
+            long ex = Math.round(x1 * scale), ey = Math.round(y1 * scale);
+            boolean connected = sx == px && sy == py;
+            if( color.ordinal() != runColor || connected != runConnected || runLength == MAX_RUN ) {
+                flushRun();
+                runColor = color.ordinal();
+                runConnected = connected;
+            }
+            if( ! connected ) {
+                writeVarLong(run, zigzag(sx - px));
+                writeVarLong(run, zigzag(sy - py));
+            }
+            writeVarLong(run, zigzag(ex - sx));
+            writeVarLong(run, zigzag(ey - sy));
+            runLength++;
+            count++;
+            px = ex;
+            py = ey;
+        }
+
+        @Override
+        public void accept( PenColor color, double x0, double y0, double x1, double y1 ) {
+            try {
+                write(color, x0, y0, x1, y1);
+            } catch( IOException e ) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * @return the number of segments written so far
+         */
+        public long getCount() { return count; }
+
+        /**
+         * Writes the remaining data and the segment count, and closes the file.
+         */
+        @Override
+        public void close() throws IOException {
+            if( ! channel.isOpen() ) return;
+            try {
+                flushRun();
+                drain();
+                ByteBuffer countBuf = ByteBuffer.allocate(8).putLong(0, count);
+                while( countBuf.hasRemaining() ) channel.write(countBuf, COUNT_OFFSET + countBuf.position());
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void flushRun() throws IOException {
+            if( runLength == 0 ) return;
+            run.flip();
+            if( out.remaining() < 1 + MAX_VARINT ) drain();
+            out.put((byte)(runColor | (runConnected ? CONNECTED : 0)));
+            writeVarLong(out, runLength);
+            while( run.hasRemaining() ) {
+                if( ! out.hasRemaining() ) drain();
+                int n = Math.min(out.remaining(), run.remaining());
+                int limit = run.limit();
+                run.limit(run.position() + n);
+                out.put(run);
+                run.limit(limit);
+            }
+            run.clear();
+            runLength = 0;
+        }
+
+        private void drain() throws IOException {
+            out.flip();
+            while( out.hasRemaining() ) channel.write(out);
+            out.clear();
+        }
+    }
+
+    /**
+     * Reads a file through a sliding memory-mapped window.  The window is remapped
+     * whenever fewer bytes than requested remain in it, so that no record straddles it.
+     */
+    private static class MappedInput {
+        private final FileChannel channel;
+        private final long size;
+        private final long window;
+        private long windowStart = 0;
+        MappedByteBuffer buffer;
+
+        MappedInput( FileChannel channel, long window ) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.window = window;
+            map(0);
+        }
+
+        long remaining() {
+            return size - (windowStart + buffer.position());
+        }
+
+        void ensure( int bytes ) throws IOException {
+            if( buffer.remaining() < bytes && windowStart + buffer.limit() < size ) {
+                map(windowStart + buffer.position());
+            }
+        }
+
+        private void map( long position ) throws IOException {
+            windowStart = position;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(window, size - position));
+        }
+    }
+
+    private static long zigzag( long v ) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag( long v ) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeVarLong( ByteBuffer buf, long v ) {
+        while( (v & ~0x7FL) != 0 ) {
+            buf.put((byte)((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buf.put((byte)v);
+    }
+
+    private static long readVarLong( ByteBuffer buf ) throws IOException {
+        long result = 0;
+        for( int shift = 0; shift < 64; shift += 7 ) {
+            if( ! buf.hasRemaining() ) throw new IOException("corrupt drawing file: truncated");
+            byte b = buf.get();
+            result |= (long)(b & 0x7F) << shift;
+            if( (b & 0x80) == 0 ) return result;
+        }
+        throw new IOException("corrupt drawing file: bad number");
+    }
+}
@@ -0,0 +1,59 @@
+package turtle;
+
+/**
+ * Trigonometry on headings measured in degrees.  Integer-degree headings use a lookup
+ * table built from a quarter wave, so that symmetric headings give exactly symmetric
+ * results (for example, sin is exactly 1 at 90 degrees and exactly 0 at 180), and closed
+ * shapes made with integer turns end where they started.  Other headings fall back to
+ * Math.sin and Math.cos.  Headings themselves are never rounded; only the lookup treats
+ * a heading within round-off of a whole degree as that degree.
+ */
+final class HeadingMath {
+
+    // Headings this close to a whole degree are looked up in the table, so that round-off
+    // from repeated fractional turns (e.g. 3600 turns of 0.1) doesn't leave it.
+    private static final double SNAP_EPSILON = 1e-10;
+
+    // QUARTER[d] = sin(d degrees) for 0 <= d <= 90
+    private static final double[] QUARTER = new double[91];
+
+    static {
+        for( int d = 0; d <= 90; d++ ) QUARTER[d] = Math.sin(Math.toRadians(d));
+        QUARTER[0] = 0.0;
+        QUARTER[30] = 0.5;
+        QUARTER[90] = 1.0;
+    }
+
+    private HeadingMath() { }
+
+    /**
+     * @return the heading in the range [0, 360)
+     */
+    static double normalize( double degrees ) {
+        double h = degrees % 360.0;
+        if( h < 0.0 ) h += 360.0;
+        return h >= 360.0 ? h - 360.0 : h;
+    }
+
+    /**
+     * @param degrees a heading in the range [0, 360)
+     */
+    static double sin( double degrees ) {
+        double whole = Math.rint(degrees);
+        if( Math.abs(degrees - whole) >= SNAP_EPSILON ) return Math.sin(Math.toRadians(degrees));
+        int d = (int)whole;
+        if( d == 360 ) d = 0;
+        if( d <= 90 ) return QUARTER[d];
+        if( d <= 180 ) return QUARTER[180 - d];
+        if( d <= 270 ) return -QUARTER[d - 180];
+        return -QUARTER[360 - d];
+    }
+
+    /**
+     * @param degrees a heading in the range [0, 360)
+     */
+    static double cos( double degrees ) {
+        double shifted = degrees + 90.0;
+        return sin(shifted >= 360.0 ? shifted - 360.0 : shifted);
+    }
+}
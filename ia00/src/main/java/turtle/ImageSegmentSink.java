@@ -0,0 +1,38 @@
+package turtle;
+
+import java.awt.*;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * A sink that draws each segment into an image as it arrives, using the same
+ * transform as TurtleGUI: the origin is at the center of the image and the y axis points up.
+ * It is not thread safe; wrap it in a QueuedSegmentSink to render on a separate thread.
+ */
+public class ImageSegmentSink implements SegmentSink {
+
+    private final Graphics2D g;
+    private final int width;
+    private final int height;
+    private final Line2D.Double line = new Line2D.Double();
+    private PenColor current = null;
+
+    /**
+     * @param image the image to draw into
+     */
+    public ImageSegmentSink( BufferedImage image ) {
+        this.g = image.createGraphics();
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+    }
+
+    @Override
+    public void accept( PenColor color, double x0, double y0, double x1, double y1 ) {
+        if( color != current ) {
+            g.setColor(color.asColor());
+            current = color;
+        }
+        line.setLine(x0 + width / 2, height - (y0 + height / 2), x1 + width / 2, height - (y1 + height / 2));
+        g.draw(line);
+    }
+}
@@ -0,0 +1,116 @@
+package turtle;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * An L-system: an axiom string and rewrite rules, where each symbol can also stand for
+ * turtle commands.  Compiling an L-system gives a TurtleProgram that expands the symbols
+ * lazily as it runs, so the rewritten string is never built, no matter how many
+ * iterations are used.
+ *
+ * For example, the Koch snowflake:
+ * <pre>
+ *     TurtleProgram koch = new LSystem("F--F--F")
+ *             .rule('F', "F+F--F+F")
+ *             .action('F', b -> b.forward(2))
+ *             .action('+', b -> b.turn(-60))
+ *             .action('-', b -> b.turn(60))
+ *             .compile(6);
+ * </pre>
+ * Symbols with no action (and no remaining rewrites) do nothing.
+ */
+public class LSystem {
+
+    private final String axiom;
+    private final Map<Character, String> rules = new LinkedHashMap<>();
+    private final Map<Character, Consumer<TurtleProgram.Builder>> actions = new LinkedHashMap<>();
+
+    /**
+     * @param axiom the starting string
+     */
+    public LSystem( String axiom ) {
+        if( axiom == null ) throw new IllegalArgumentException("axiom is null");
+        this.axiom = axiom;
+    }
+
+    /**
+     * Adds a rewrite rule.  Each iteration replaces the symbol with the replacement string.
+     *
+     * @param symbol the symbol to replace
+     * @param replacement the replacement string
+     * @return this L-system
+     */
+    public LSystem rule( char symbol, String replacement ) {
+        if( replacement == null ) throw new IllegalArgumentException("replacement is null");
+        rules.put(symbol, replacement);
+        return this;
+    }
+
+    /**
+     * Sets the turtle commands that a symbol stands for once it is no longer rewritten.
+     *
+     * @param symbol the symbol
+     * @param commands adds the commands to the given builder
+     * @return this L-system
+     */
+    public LSystem action( char symbol, Consumer<TurtleProgram.Builder> commands ) {
+        if( commands == null ) throw new IllegalArgumentException("commands is null");
+        actions.put(symbol, commands);
+        return this;
+    }
+
+    /**
+     * Compiles this L-system into a program.
+     *
+     * @param iterations the number of times the rules are applied to the axiom
+     * @return the program
+     */
+    public TurtleProgram compile( int iterations ) {
+        if( iterations < 0 ) throw new IllegalArgumentException("iterations must not be negative");
+
+        Map<Character, Integer> symbols = new HashMap<>();
+        collectSymbols(axiom, symbols);
+        for( Map.Entry<Character, String> rule : rules.entrySet() ) {
+            symbols.putIfAbsent(rule.getKey(), symbols.size());
+            collectSymbols(rule.getValue(), symbols);
+        }
+        for( char symbol : actions.keySet() ) symbols.putIfAbsent(symbol, symbols.size());
+
+        int n = symbols.size();
+        int[] ruleStart = new int[n], ruleEnd = new int[n];
+        int[] actionStart = new int[n], actionEnd = new int[n];
+        Arrays.fill(ruleStart, -1);
+
+        // The main block must come first, followed by the rules and the actions
+        TurtleProgram.Builder b = TurtleProgram.builder();
+        expandAll(b, axiom, symbols);
+        int mainEnd = b.size();
+        for( Map.Entry<Character, String> rule : rules.entrySet() ) {
+            int s = symbols.get(rule.getKey());
+            ruleStart[s] = b.size();
+            expandAll(b, rule.getValue(), symbols);
+            ruleEnd[s] = b.size();
+        }
+        for( Map.Entry<Character, Consumer<TurtleProgram.Builder>> action : actions.entrySet() ) {
+            int s = symbols.get(action.getKey());
+            actionStart[s] = b.size();
+            action.getValue().accept(b);
+            actionEnd[s] = b.size();
+        }
+
+        return new TurtleProgram(b.code(), b.args(), mainEnd, ruleStart, ruleEnd,
+                actionStart, actionEnd, iterations);
+    }
+
+    private static void collectSymbols( String s, Map<Character, Integer> symbols ) {
+        for( int i = 0; i < s.length(); i++ ) symbols.putIfAbsent(s.charAt(i), symbols.size());
+    }
+
+    private static void expandAll( TurtleProgram.Builder b, String s, Map<Character, Integer> symbols ) {
+        for( int i = 0; i < s.length(); i++ ) b.expand(symbols.get(s.charAt(i)));
+    }
+}
@@ -24,6 +24,21 @@ public class LineSegment {
         this.color = color;
     }
 
+    /**
+     * Construct a LineSegment from raw coordinates.
+     *
+     * @param color the color of the line segment
+     * @param x0 the x coordinate of the start of the line
+     * @param y0 the y coordinate of the start of the line
+     * @param x1 the x coordinate of the end of the line
+     * @param y1 the y coordinate of the end of the line
+     */
+    public LineSegment( PenColor color, double x0, double y0, double x1, double y1 ) {
+        this.start = new Point2D.Double(x0, y0);
+        this.end = new Point2D.Double(x1, y1);
+        this.color = color;
+    }
+
     public Point2D.Double getStart() { return (Point2D.Double)this.start.clone(); }
     public Point2D.Double getEnd() { return (Point2D.Double)this.end.clone(); }
     public PenColor getPenColor() { return this.color; }
@@ -0,0 +1,133 @@
+package turtle;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A sink that hands segments to another sink on a separate consumer thread, so that
+ * a producer (such as a Turtle) and a consumer (such as a renderer or a file writer) run
+ * concurrently.  Segments are passed along in fixed-size batches through a bounded queue.
+ * When the queue is full the producer blocks until the consumer catches up, and batches
+ * are reused once consumed, so memory use is constant no matter how many segments
+ * pass through.
+ *
+ * Only one thread may produce segments.  Closing the sink delivers the remaining
+ * segments and waits for the consumer thread to finish.
+ */
+public class QueuedSegmentSink implements SegmentSink, AutoCloseable {
+
+    private static final int DEFAULT_BATCH_SIZE = 4096;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final SegmentStore END = new SegmentStore(0);
+
+    private final SegmentSink downstream;
+    private final int batchSize;
+    private final BlockingQueue<SegmentStore> filled;
+    private final BlockingQueue<SegmentStore> free;
+    private final Thread consumer;
+    private SegmentStore current;
+    private boolean closed = false;
+    private volatile RuntimeException failure = null;
+
+    /**
+     * Creates a sink with default batch size and queue capacity.
+     *
+     * @param downstream the sink that receives the segments on the consumer thread
+     */
+    public QueuedSegmentSink( SegmentSink downstream ) {
+        this(downstream, DEFAULT_BATCH_SIZE, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param downstream the sink that receives the segments on the consumer thread
+     * @param batchSize the number of segments passed to the consumer at a time
+     * @param capacity the number of full batches that may wait for the consumer
+     */
+    public QueuedSegmentSink( SegmentSink downstream, int batchSize, int capacity ) {
+        if( batchSize <= 0 || capacity <= 0 ) throw new IllegalArgumentException("batch size and capacity must be positive");
+        this.downstream = downstream;
+        this.batchSize = batchSize;
+        this.filled = new ArrayBlockingQueue<>(capacity + 1);
+        // One batch is being filled, one is being consumed and the rest can be queued.
+        // The free queue can hold every batch, so the consumer never blocks returning one.
+        this.free = new ArrayBlockingQueue<>(capacity + 2);
+        for( int i = 0; i < capacity + 1; i++ ) free.add(new SegmentStore(batchSize));
+        this.current = new SegmentStore(batchSize);
+
+        this.consumer = new Thread(this::consume, "segment-consumer");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    @Override
+    public void accept( PenColor color, double x0, double y0, double x1, double y1 ) {
+        if( closed ) throw new IllegalStateException("sink is closed");
+        current.add(color, x0, y0, x1, y1);
+        if( current.size() == batchSize ) flush();
+    }
+
+    /**
+     * Hands the segments accepted so far to the consumer thread, blocking if the
+     * queue is full.  This doesn't wait for the consumer to process them.
+     */
+    public void flush() {
+        checkFailure();
+        if( current.isEmpty() ) return;
+        try {
+            long start = TurtleMetrics.enabled ? System.nanoTime() : 0L;
+            filled.put(current);
+            current = free.take();
+            if( TurtleMetrics.enabled ) TurtleMetrics.queueWait(System.nanoTime() - start);
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the consumer", e);
+        }
+    }
+
+    /**
+     * Delivers the remaining segments and waits until the consumer has processed them all.
+     *
+     * @throws RuntimeException if the downstream sink failed
+     */
+    @Override
+    public void close() {
+        if( closed ) return;
+        closed = true;
+        try {
+            if( ! current.isEmpty() ) filled.put(current);
+            filled.put(END);
+            consumer.join();
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the consumer", e);
+        }
+        checkFailure();
+    }
+
+    private void consume() {
+        SegmentSink sink = downstream;
+        try {
+            while( true ) {
+                SegmentStore batch = filled.take();
+                if( batch == END ) return;
+                if( failure == null ) {
+                    try {
+                        batch.forEach((i, color, x0, y0, x1, y1) -> sink.accept(color, x0, y0, x1, y1));
+                    } catch( RuntimeException e ) {
+                        // Keep draining so that the producer never blocks forever
+                        failure = e;
+                    }
+                }
+                batch.clear();
+                free.put(batch);
+            }
+        } catch( InterruptedException e ) {
+            failure = new IllegalStateException("consumer interrupted", e);
+        }
+    }
+
+    private void checkFailure() {
+        RuntimeException e = failure;
+        if( e != null ) throw new IllegalStateException("downstream sink failed", e);
+    }
+}
@@ -0,0 +1,237 @@
+package turtle;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * A uniform grid over the segments of a SegmentStore, for finding the segments in a
+ * region (viewport culling), the segment under a point (hit testing) and the segment
+ * nearest to a point.  The grid covers the bounding box of the segments and each cell
+ * lists the segments that cross it, so a long diagonal segment is listed in about as
+ * many cells as it passes through rather than in every cell of its bounding box.  Cell
+ * lists are stored in two flat int arrays, so the index costs a few bytes per segment
+ * crossing.
+ *
+ * The index covers the segments that were in the store when it was built.  All
+ * coordinates are turtle (world) coordinates.  An index is immutable and may be
+ * queried from several threads.
+ */
+public class SegmentIndex {
+
+    private static final int MAX_CELLS_PER_SIDE = 1024;
+    private static final double TARGET_SEGMENTS_PER_CELL = 4.0;
+    // The average number of cells a segment may be listed in, which bounds the size of the
+    // index when the segments are long compared to the cells
+    private static final double MAX_CELLS_PER_SEGMENT = 16.0;
+    // Fraction of a cell added above and below a segment's span in each column, so that
+    // rounding at the column edges can't drop a cell the segment touches
+    private static final double CELL_PAD = 1e-6;
+
+    private final SegmentStore segments;
+    private final int size;
+    private final double minX, minY;
+    private final double cellWidth, cellHeight;
+    private final int cols, rows;
+    private final int[] cellStart;   // cell c holds cellItems[cellStart[c] .. cellStart[c+1])
+    private final int[] cellItems;
+
+    /**
+     * Builds an index over the segments currently in the store.
+     *
+     * @param segments the segments to index
+     */
+    public SegmentIndex( SegmentStore segments ) {
+        this.segments = segments;
+        this.size = segments.size();
+
+        double loX = Double.POSITIVE_INFINITY, loY = Double.POSITIVE_INFINITY;
+        double hiX = Double.NEGATIVE_INFINITY, hiY = Double.NEGATIVE_INFINITY;
+        for( int i = 0; i < size; i++ ) {
+            loX = Math.min(loX, Math.min(segments.getX0(i), segments.getX1(i)));
+            hiX = Math.max(hiX, Math.max(segments.getX0(i), segments.getX1(i)));
+            loY = Math.min(loY, Math.min(segments.getY0(i), segments.getY1(i)));
+            hiY = Math.max(hiY, Math.max(segments.getY0(i), segments.getY1(i)));
+        }
+        if( size == 0 ) {
+            loX = loY = hiX = hiY = 0.0;
+        }
+
+        int side = (int)Math.ceil(Math.sqrt(size / TARGET_SEGMENTS_PER_CELL));
+        // A segment crosses about one cell plus one per cell width it spans in x and in y
+        double span = 0.0;
+        for( int i = 0; i < size; i++ ) {
+            span += Math.abs(segments.getX1(i) - segments.getX0(i)) / Math.max(hiX - loX, 1e-9)
+                    + Math.abs(segments.getY1(i) - segments.getY0(i)) / Math.max(hiY - loY, 1e-9);
+        }
+        if( span > 0.0 ) side = (int)Math.min(side, (MAX_CELLS_PER_SEGMENT - 1) * size / span);
+        side = Math.max(1, Math.min(MAX_CELLS_PER_SIDE, side));
+        this.minX = loX;
+        this.minY = loY;
+        this.cols = side;
+        this.rows = side;
+        // Avoid zero-sized cells when all of the segments are on a horizontal or vertical line
+        this.cellWidth = Math.max(hiX - loX, 1e-9) / cols;
+        this.cellHeight = Math.max(hiY - loY, 1e-9) / rows;
+
+        // Count the entries for each cell, then fill the cells in a second pass
+        int[] start = new int[cols * rows + 1];
+        for( int i = 0; i < size; i++ ) addToCells(i, start, null);
+        for( int c = 0; c < cols * rows; c++ ) start[c + 1] = Math.addExact(start[c + 1], start[c]);
+
+        int[] items = new int[start[cols * rows]];
+        int[] fill = Arrays.copyOf(start, cols * rows);
+        for( int i = 0; i < size; i++ ) addToCells(i, fill, items);
+        this.cellStart = start;
+        this.cellItems = items;
+    }
+
+    /**
+     * @return the number of segments covered by this index
+     */
+    public int size() { return size; }
+
+    /**
+     * Finds the segments that intersect a rectangle.
+     *
+     * @return the indices of the intersecting segments, in drawing order
+     */
+    public int[] query( double minX, double minY, double maxX, double maxY ) {
+        if( size == 0 ) return new int[0];
+        Rectangle2D.Double rect = new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+        int c0 = col(minX), c1 = col(maxX), r0 = row(minY), r1 = row(maxY);
+
+        int[] found = new int[16];
+        int n = 0;
+        for( int r = r0; r <= r1; r++ ) {
+            for( int c = c0; c <= c1; c++ ) {
+                int cell = r * cols + c;
+                for( int k = cellStart[cell]; k < cellStart[cell + 1]; k++ ) {
+                    int i = cellItems[k];
+                    if( ! intersects(rect, i) ) continue;
+                    if( n == found.length ) found = Arrays.copyOf(found, n * 2);
+                    found[n++] = i;
+                }
+            }
+        }
+
+        // A segment appears once for every cell it overlaps, so sort and drop the duplicates
+        Arrays.sort(found, 0, n);
+        int unique = 0;
+        for( int k = 0; k < n; k++ ) {
+            if( unique == 0 || found[k] != found[unique - 1] ) found[unique++] = found[k];
+        }
+        return Arrays.copyOf(found, unique);
+    }
+
+    /**
+     * Finds the segment drawn on top at a point: the last-drawn segment within
+     * the given distance.
+     *
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @param tolerance the largest distance from the point to the segment
+     * @return the index of the segment, or -1 if there is none within the tolerance
+     */
+    public int hitTest( double x, double y, double tolerance ) {
+        int[] candidates = query(x - tolerance, y - tolerance, x + tolerance, y + tolerance);
+        double limit = tolerance * tolerance;
+        for( int k = candidates.length - 1; k >= 0; k-- ) {
+            if( distanceSq(candidates[k], x, y) <= limit ) return candidates[k];
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the segment closest to a point.  Cells are searched in growing rings around
+     * the point until no unsearched cell can contain a closer segment.
+     *
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @return the index of the nearest segment, or -1 if the index is empty
+     */
+    public int nearest( double x, double y ) {
+        if( size == 0 ) return -1;
+        int pc = (int)Math.floor((x - minX) / cellWidth);
+        int pr = (int)Math.floor((y - minY) / cellHeight);
+
+        int best = -1;
+        double bestDistSq = Double.POSITIVE_INFINITY;
+        int maxRing = Math.max(Math.max(Math.abs(pc), Math.abs(cols - 1 - pc)),
+                Math.max(Math.abs(pr), Math.abs(rows - 1 - pr)));
+        for( int ring = 0; ring <= maxRing; ring++ ) {
+            // Any segment in this ring or beyond is at least this far away
+            double reach = (ring - 1) * Math.min(cellWidth, cellHeight);
+            if( best >= 0 && ring > 0 && reach > 0 && reach * reach > bestDistSq ) break;
+
+            for( int r = pr - ring; r <= pr + ring; r++ ) {
+                if( r < 0 || r >= rows ) continue;
+                boolean edgeRow = r == pr - ring || r == pr + ring;
+                for( int c = pc - ring; c <= pc + ring; c += edgeRow ? 1 : 2 * ring ) {
+                    if( c >= 0 && c < cols ) {
+                        int cell = r * cols + c;
+                        for( int k = cellStart[cell]; k < cellStart[cell + 1]; k++ ) {
+                            int i = cellItems[k];
+                            double d = distanceSq(i, x, y);
+                            if( d < bestDistSq || (d == bestDistSq && i > best) ) {
+                                bestDistSq = d;
+                                best = i;
+                            }
+                        }
+                    }
+                    if( ring == 0 ) break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Adds segment i to the cells it crosses: in each column it spans, the rows between
+     * its heights at the column's edges.  With items null, counts the entries in
+     * cells[cell + 1] instead; otherwise stores i at items[cells[cell]++].
+     */
+    private void addToCells( int i, int[] cells, int[] items ) {
+        double x0 = segments.getX0(i), y0 = segments.getY0(i);
+        double x1 = segments.getX1(i), y1 = segments.getY1(i);
+        if( x0 > x1 ) {
+            double t = x0; x0 = x1; x1 = t;
+            t = y0; y0 = y1; y1 = t;
+        }
+        double slope = x1 > x0 ? (y1 - y0) / (x1 - x0) : 0.0;
+        double pad = CELL_PAD * cellHeight;
+        int c0 = col(x0), c1 = col(x1);
+        for( int c = c0; c <= c1; c++ ) {
+            double ya = c == c0 ? y0 : y0 + (minX + c * cellWidth - x0) * slope;
+            double yb = c == c1 ? y1 : y0 + (minX + (c + 1) * cellWidth - x0) * slope;
+            int r0 = row(Math.min(ya, yb) - pad), r1 = row(Math.max(ya, yb) + pad);
+            for( int r = r0; r <= r1; r++ ) {
+                int cell = r * cols + c;
+                if( items == null ) cells[cell + 1]++;
+                else items[cells[cell]++] = i;
+            }
+        }
+    }
+
+    private boolean intersects( Rectangle2D.Double rect, int i ) {
+        double x0 = segments.getX0(i), y0 = segments.getY0(i);
+        double x1 = segments.getX1(i), y1 = segments.getY1(i);
+        if( x0 == x1 && y0 == y1 ) {
+            return x0 >= rect.x && x0 <= rect.x + rect.width && y0 >= rect.y && y0 <= rect.y + rect.height;
+        }
+        return rect.intersectsLine(x0, y0, x1, y1);
+    }
+
+    private double distanceSq( int i, double x, double y ) {
+        return Line2D.ptSegDistSq(segments.getX0(i), segments.getY0(i),
+                segments.getX1(i), segments.getY1(i), x, y);
+    }
+
+    private int col( double x ) {
+        return Math.max(0, Math.min(cols - 1, (int)Math.floor((x - minX) / cellWidth)));
+    }
+
+    private int row( double y ) {
+        return Math.max(0, Math.min(rows - 1, (int)Math.floor((y - minY) / cellHeight)));
+    }
+}
@@ -0,0 +1,176 @@
+package turtle;
+
+import java.awt.geom.Line2D;
+import java.util.Arrays;
+
+/**
+ * Reduces the number of segments in a drawing without visibly changing it.  The
+ * segments are split into polylines: runs of connected segments that share a pen color.
+ * Within each polyline, consecutive collinear segments that continue in the same direction
+ * are merged.  With a positive tolerance, the polyline is further simplified with the
+ * Douglas-Peucker algorithm, which drops points that are closer than the tolerance to
+ * the simplified line.
+ */
+public class SegmentSimplifier {
+
+    // Relative tolerance used to decide that two segments are collinear
+    private static final double COLLINEAR_EPSILON = 1e-9;
+
+    private double[] xs = new double[64];   // points of the current polyline
+    private double[] ys = new double[64];
+    private boolean[] keep = new boolean[64];
+    private int[] stack = new int[64];
+
+    /**
+     * The number of segments before and after simplification.
+     */
+    public static class Report {
+        private final int before;
+        private final int after;
+
+        Report( int before, int after ) {
+            this.before = before;
+            this.after = after;
+        }
+
+        public int getBefore() { return before; }
+        public int getAfter() { return after; }
+
+        @Override
+        public String toString() {
+            double removed = before == 0 ? 0.0 : 100.0 * (before - after) / before;
+            return String.format("%,d segments simplified to %,d (%.1f%% fewer)", before, after, removed);
+        }
+    }
+
+    /**
+     * Simplifies the source segments, appending the result to dest.
+     *
+     * @param source the segments to simplify
+     * @param dest the store that receives the simplified segments
+     * @param tolerance the largest distance a dropped point may be from the simplified line.
+     *   Zero only merges collinear segments.
+     * @return the segment counts before and after
+     * @throws IllegalArgumentException if the tolerance is negative
+     */
+    public Report simplify( SegmentStore source, SegmentStore dest, double tolerance ) {
+        if( !(tolerance >= 0.0) ) throw new IllegalArgumentException("tolerance must not be negative");
+        int destStart = dest.size();
+        int n = source.size();
+        int i = 0;
+        while( i < n ) {
+            // Collect the polyline that starts at segment i
+            PenColor color = source.getColor(i);
+            int points = 0;
+            points = addPoint(points, source.getX0(i), source.getY0(i));
+            points = addPoint(points, source.getX1(i), source.getY1(i));
+            int j = i + 1;
+            while( j < n && source.getColor(j) == color
+                    && source.getX0(j) == source.getX1(j - 1) && source.getY0(j) == source.getY1(j - 1) ) {
+                points = addPoint(points, source.getX1(j), source.getY1(j));
+                j++;
+            }
+
+            points = mergeCollinear(points);
+            if( tolerance > 0.0 && points > 2 ) {
+                points = douglasPeucker(points, tolerance);
+            }
+            for( int k = 1; k < points; k++ ) {
+                dest.add(color, xs[k - 1], ys[k - 1], xs[k], ys[k]);
+            }
+            i = j;
+        }
+        return new Report(n, dest.size() - destStart);
+    }
+
+    private int addPoint( int points, double x, double y ) {
+        if( points == xs.length ) {
+            xs = Arrays.copyOf(xs, points * 2);
+            ys = Arrays.copyOf(ys, points * 2);
+        }
+        xs[points] = x;
+        ys[points] = y;
+        return points + 1;
+    }
+
+    /**
+     * Removes repeated points and interior points where the polyline continues straight
+     * ahead.  Points where the line reverses are kept, since the overshoot is visible.
+     */
+    private int mergeCollinear( int points ) {
+        int out = 1;
+        for( int k = 1; k < points; k++ ) {
+            double x = xs[k], y = ys[k];
+            if( x == xs[out - 1] && y == ys[out - 1] && points > 2 ) continue;
+            if( out >= 2 ) {
+                double ax = xs[out - 1] - xs[out - 2], ay = ys[out - 1] - ys[out - 2];
+                double bx = x - xs[out - 1], by = y - ys[out - 1];
+                double cross = ax * by - ay * bx;
+                double dot = ax * bx + ay * by;
+                if( dot > 0 && Math.abs(cross) <= COLLINEAR_EPSILON * Math.hypot(ax, ay) * Math.hypot(bx, by) ) {
+                    out--;   // replace the middle point
+                }
+            }
+            xs[out] = x;
+            ys[out] = y;
+            out++;
+        }
+        // A polyline made only of repeated points is kept as a single zero-length segment
+        if( out == 1 ) {
+            xs[1] = xs[0];
+            ys[1] = ys[0];
+            out = 2;
+        }
+        return out;
+    }
+
+    /**
+     * Douglas-Peucker simplification of the first points of xs/ys, using an explicit stack
+     * so that very long polylines don't overflow the call stack.
+     */
+    private int douglasPeucker( int points, double tolerance ) {
+        if( keep.length < points ) keep = new boolean[xs.length];
+        Arrays.fill(keep, 0, points, false);
+        keep[0] = true;
+        keep[points - 1] = true;
+
+        double limit = tolerance * tolerance;
+        int top = 0;
+        top = push(top, 0, points - 1);
+        while( top > 0 ) {
+            int last = stack[--top];
+            int first = stack[--top];
+            double maxDist = -1.0;
+            int farthest = -1;
+            for( int k = first + 1; k < last; k++ ) {
+                double d = Line2D.ptSegDistSq(xs[first], ys[first], xs[last], ys[last], xs[k], ys[k]);
+                if( d > maxDist ) {
+                    maxDist = d;
+                    farthest = k;
+                }
+            }
+            if( farthest >= 0 && maxDist > limit ) {
+                keep[farthest] = true;
+                top = push(top, first, farthest);
+                top = push(top, farthest, last);
+            }
+        }
+
+        int out = 0;
+        for( int k = 0; k < points; k++ ) {
+            if( keep[k] ) {
+                xs[out] = xs[k];
+                ys[out] = ys[k];
+                out++;
+            }
+        }
+        return out;
+    }
+
+    private int push( int top, int first, int last ) {
+        if( top + 2 > stack.length ) stack = Arrays.copyOf(stack, stack.length * 2);
+        stack[top++] = first;
+        stack[top++] = last;
+        return top;
+    }
+}
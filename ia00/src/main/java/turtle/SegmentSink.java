@@ -0,0 +1,20 @@
+package turtle;
+
+/**
+ * Receives line segments as they are produced, for example by a Turtle as it moves.
+ * Implementations may store, render or write out the segments.
+ */
+@FunctionalInterface
+public interface SegmentSink {
+
+    /**
+     * Accepts one line segment.
+     *
+     * @param color the pen color of the segment
+     * @param x0 the x coordinate of the start of the segment
+     * @param y0 the y coordinate of the start of the segment
+     * @param x1 the x coordinate of the end of the segment
+     * @param y1 the y coordinate of the end of the segment
+     */
+    void accept( PenColor color, double x0, double y0, double x1, double y1 );
+}
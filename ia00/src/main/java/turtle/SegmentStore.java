@@ -0,0 +1,383 @@
+package turtle;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact, growable store of line segments.  Coordinates are packed into primitive
+ * arrays (x0, y0, x1, y1 for each segment) and colors are stored as {@link PenColor}
+ * ordinals, so adding a segment allocates nothing beyond the occasional array growth.
+ *
+ * The arrays are split into chunks of 4096 segments.  A store can be forked in constant
+ * time: the fork shares every chunk with the original, and a chunk is copied only when
+ * one of the two stores writes to it.  Since segments are normally only appended, forks
+ * of a long history share all of it except the chunk each one is appending to.
+ *
+ * Segments can be read without creating any objects through the index accessors,
+ * a {@link Cursor}, or a {@link SegmentVisitor}.
+ */
+public class SegmentStore implements SegmentSink {
+
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final PenColor[] COLORS = PenColor.values();
+
+    // For each chunk: x0, y0, x1, y1 per segment, the PenColor ordinals, and the owner.
+    // A store only writes to chunks (and spine arrays) whose owner is its current token;
+    // anything else is shared with a fork and is copied first.
+    private double[][] coordChunks;
+    private byte[][] colorChunks;
+    private Object[] chunkOwners;
+    private Object spineOwner;
+    private Object token = new Object();
+    private int size;
+
+    /**
+     * Receives segments from {@link SegmentStore#forEach(SegmentVisitor)}.
+     */
+    @FunctionalInterface
+    public interface SegmentVisitor {
+        void visit( int index, PenColor color, double x0, double y0, double x1, double y1 );
+    }
+
+    /**
+     * A reusable, forward-only view of the segments in a store.  Call {@link #next()}
+     * before reading the first segment.
+     */
+    public class Cursor {
+        private int index = -1;
+        private double[] coords;
+        private byte[] colors;
+        private int offset;
+
+        public boolean next() {
+            if( index + 1 >= size ) return false;
+            index++;
+            int c = index >>> CHUNK_SHIFT;
+            coords = coordChunks[c];
+            colors = colorChunks[c];
+            offset = index & CHUNK_MASK;
+            return true;
+        }
+
+        /** Moves the cursor so that the next call to next() visits the given index. */
+        public void seek( int index ) { this.index = index - 1; }
+
+        public int index() { return index; }
+        public PenColor color() { return COLORS[colors[offset]]; }
+        public double x0() { return coords[offset * 4]; }
+        public double y0() { return coords[offset * 4 + 1]; }
+        public double x1() { return coords[offset * 4 + 2]; }
+        public double y1() { return coords[offset * 4 + 3]; }
+    }
+
+    public SegmentStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of segments to reserve space for
+     */
+    public SegmentStore( int capacity ) {
+        if( capacity < 0 ) throw new IllegalArgumentException("capacity must not be negative");
+        int chunks = Math.max(1, chunksFor(capacity));
+        coordChunks = new double[chunks][];
+        colorChunks = new byte[chunks][];
+        chunkOwners = new Object[chunks];
+        spineOwner = token;
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Appends a segment to the end of this store.
+     */
+    public void add( PenColor color, double x0, double y0, double x1, double y1 ) {
+        int c = size >>> CHUNK_SHIFT, o = size & CHUNK_MASK;
+        if( c >= chunkOwners.length || chunkOwners[c] != token || colorChunks[c].length == o ) {
+            prepareChunk(c, o + 1);
+        }
+        double[] coords = coordChunks[c];
+        int i = o * 4;
+        coords[i] = x0;
+        coords[i + 1] = y0;
+        coords[i + 2] = x1;
+        coords[i + 3] = y1;
+        colorChunks[c][o] = (byte)color.ordinal();
+        size++;
+    }
+
+    /**
+     * Appends a segment, so that a store can be used wherever a SegmentSink is expected.
+     */
+    @Override
+    public void accept( PenColor color, double x0, double y0, double x1, double y1 ) {
+        add(color, x0, y0, x1, y1);
+    }
+
+    /**
+     * Appends all of the segments of another store to the end of this one.
+     */
+    public void addAll( SegmentStore other ) {
+        int start = size, n = other.size;
+        prepareRange(start, start + n);
+        size = start + n;
+        copyRange(other, start, 0.0, 0.0);
+    }
+
+    /**
+     * Appends a connected path of n segments in one color: from (x, y) to the first point,
+     * then from each point to the next.  The store is filled a chunk at a time.
+     */
+    void addPath( PenColor color, double x, double y, double[] xs, double[] ys, int n ) {
+        int start = size;
+        prepareRange(start, start + n);
+        byte ordinal = (byte)color.ordinal();
+        for( int k = 0; k < n; ) {
+            int c = (start + k) >>> CHUNK_SHIFT, o = (start + k) & CHUNK_MASK;
+            int run = Math.min(n - k, CHUNK_SIZE - o);
+            double[] coords = coordChunks[c];
+            Arrays.fill(colorChunks[c], o, o + run, ordinal);
+            int i = k, j = o * 4;
+            if( i == 0 ) {
+                coords[j] = x;
+                coords[j + 1] = y;
+                coords[j + 2] = xs[0];
+                coords[j + 3] = ys[0];
+                i++;
+                j += 4;
+            }
+            for( int end = k + run; i < end; i++, j += 4 ) {
+                coords[j] = xs[i - 1];
+                coords[j + 1] = ys[i - 1];
+                coords[j + 2] = xs[i];
+                coords[j + 3] = ys[i];
+            }
+            k += run;
+        }
+        size = start + n;
+    }
+
+    /**
+     * Copies segments from another store into this one, translating them by (dx, dy).
+     * The destination range must already be within this store's size and must have been
+     * added with resize.  Copies into disjoint ranges may run concurrently.
+     */
+    void copyFrom( SegmentStore source, int destIndex, double dx, double dy ) {
+        int n = source.size;
+        if( destIndex < 0 || destIndex + n > size )
+            throw new IndexOutOfBoundsException("range [" + destIndex + ", " + (destIndex + n) + ") of " + size);
+        copyRange(source, destIndex, dx, dy);
+    }
+
+    /**
+     * Grows this store to the given size.  New segments are zero-length and black until
+     * they are overwritten with copyFrom.
+     */
+    void resize( int newSize ) {
+        if( newSize < size ) throw new IllegalArgumentException("cannot shrink a store");
+        prepareRange(size, newSize);
+        for( int i = size; i < newSize; ) {
+            int c = i >>> CHUNK_SHIFT, o = i & CHUNK_MASK;
+            int n = Math.min(CHUNK_SIZE - o, newSize - i);
+            Arrays.fill(coordChunks[c], o * 4, (o + n) * 4, 0.0);
+            Arrays.fill(colorChunks[c], o, o + n, (byte)PenColor.BLACK.ordinal());
+            i += n;
+        }
+        size = newSize;
+    }
+
+    /**
+     * Returns a store holding the same segments as this one, in constant time.  The two
+     * stores share their chunks until one of them writes to a shared chunk, which is then
+     * copied.
+     *
+     * @return the new store
+     */
+    public SegmentStore fork() {
+        SegmentStore copy = new SegmentStore(0);
+        copy.shareFrom(this);
+        token = new Object();
+        return copy;
+    }
+
+    /**
+     * Replaces the contents of this store with those of another, in constant time.  This
+     * store never writes to the other's chunks, and the other store must not be changed
+     * afterwards (use a fork that nothing else refers to).
+     */
+    void shareFrom( SegmentStore other ) {
+        coordChunks = other.coordChunks;
+        colorChunks = other.colorChunks;
+        chunkOwners = other.chunkOwners;
+        spineOwner = other.spineOwner;
+        size = other.size;
+        token = new Object();
+    }
+
+    /**
+     * Makes sure this store can hold the given number of segments without growing.
+     */
+    public void ensureCapacity( int capacity ) {
+        int chunks = chunksFor(capacity);
+        for( int c = 0; c < chunks; c++ ) {
+            int needed = Math.min(CHUNK_SIZE, capacity - c * CHUNK_SIZE);
+            if( c >= colorChunks.length || colorChunks[c] == null || colorChunks[c].length < needed ) {
+                prepareChunk(c, needed);
+            }
+        }
+    }
+
+    /**
+     * Removes all segments.  The allocated capacity is kept.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public PenColor getColor( int i ) { return COLORS[colorChunks[checkIndex(i) >>> CHUNK_SHIFT][i & CHUNK_MASK]]; }
+    public double getX0( int i ) { return coord(i, 0); }
+    public double getY0( int i ) { return coord(i, 1); }
+    public double getX1( int i ) { return coord(i, 2); }
+    public double getY1( int i ) { return coord(i, 3); }
+
+    /**
+     * @return a new cursor positioned before the first segment
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Visits every segment in order.
+     */
+    public void forEach( SegmentVisitor visitor ) {
+        forEach(0, size, visitor);
+    }
+
+    /**
+     * Visits the segments with indices from (inclusive) to (exclusive) in order.
+     */
+    public void forEach( int from, int to, SegmentVisitor visitor ) {
+        if( from < 0 || to > size || from > to )
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + ") of " + size);
+        for( int i = from; i < to; ) {
+            int c = i >>> CHUNK_SHIFT;
+            double[] coords = coordChunks[c];
+            byte[] colors = colorChunks[c];
+            int end = Math.min(to, (c + 1) * CHUNK_SIZE);
+            for( ; i < end; i++ ) {
+                int o = i & CHUNK_MASK, k = o * 4;
+                visitor.visit(i, COLORS[colors[o]], coords[k], coords[k + 1], coords[k + 2], coords[k + 3]);
+            }
+        }
+    }
+
+    /**
+     * Returns a read-only list view of this store.  LineSegment objects are created
+     * on demand when elements are accessed, and the view reflects later changes to the store.
+     *
+     * @return a list view of the segments
+     */
+    public List<LineSegment> asList() {
+        return new AbstractList<>() {
+            @Override
+            public LineSegment get( int i ) {
+                return new LineSegment(getColor(i), getX0(i), getY0(i), getX1(i), getY1(i));
+            }
+
+            @Override
+            public int size() { return size; }
+        };
+    }
+
+    private double coord( int i, int k ) {
+        return coordChunks[checkIndex(i) >>> CHUNK_SHIFT][(i & CHUNK_MASK) * 4 + k];
+    }
+
+    private int checkIndex( int i ) {
+        if( i < 0 || i >= size ) throw new IndexOutOfBoundsException("index " + i + " of " + size);
+        return i;
+    }
+
+    private static int chunksFor( int capacity ) {
+        return (int)(((long)capacity + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+    }
+
+    /**
+     * Makes the segments [from, to) writable by this store.
+     */
+    private void prepareRange( int from, int to ) {
+        if( to < from ) throw new IllegalArgumentException("too many segments");
+        for( int i = from; i < to; ) {
+            int c = i >>> CHUNK_SHIFT;
+            int end = Math.min(to, (c + 1) * CHUNK_SIZE);
+            prepareChunk(c, end - c * CHUNK_SIZE);
+            i = end;
+        }
+    }
+
+    /**
+     * Makes chunk c owned by this store and big enough for the given number of segments,
+     * first copying the spine or the chunk if they are shared with a fork.
+     */
+    private void prepareChunk( int c, int needed ) {
+        if( spineOwner != token || c >= chunkOwners.length ) {
+            int length = chunkOwners.length;
+            if( c >= length ) length = Math.max(c + 1, length * 2);
+            coordChunks = Arrays.copyOf(coordChunks, length);
+            colorChunks = Arrays.copyOf(colorChunks, length);
+            chunkOwners = Arrays.copyOf(chunkOwners, length);
+            spineOwner = token;
+        }
+
+        byte[] colors = colorChunks[c];
+        int current = colors == null ? 0 : colors.length;
+        int length = current;
+        if( current < needed ) {
+            // Only the first chunk grows gradually, so that small stores stay small
+            length = c > 0 ? CHUNK_SIZE
+                    : Math.min(CHUNK_SIZE, Math.max(needed, Math.max(INITIAL_CAPACITY, current + (current >> 1))));
+        }
+        if( colors == null ) {
+            coordChunks[c] = new double[length * 4];
+            colorChunks[c] = new byte[length];
+        } else if( chunkOwners[c] != token || length != current ) {
+            coordChunks[c] = Arrays.copyOf(coordChunks[c], length * 4);
+            colorChunks[c] = Arrays.copyOf(colors, length);
+        }
+        chunkOwners[c] = token;
+    }
+
+    /**
+     * Copies all of the source's segments to [destIndex, destIndex + source.size()), one run
+     * at a time that stays within a single chunk of each store.  The destination must
+     * already be writable.
+     */
+    private void copyRange( SegmentStore source, int destIndex, double dx, double dy ) {
+        int n = source.size;
+        for( int k = 0; k < n; ) {
+            int sc = k >>> CHUNK_SHIFT, so = k & CHUNK_MASK;
+            int dc = (destIndex + k) >>> CHUNK_SHIFT, dof = (destIndex + k) & CHUNK_MASK;
+            int run = Math.min(n - k, Math.min(CHUNK_SIZE - so, CHUNK_SIZE - dof));
+
+            System.arraycopy(source.colorChunks[sc], so, colorChunks[dc], dof, run);
+            double[] from = source.coordChunks[sc];
+            double[] to = coordChunks[dc];
+            if( dx == 0.0 && dy == 0.0 ) {
+                System.arraycopy(from, so * 4, to, dof * 4, run * 4);
+            } else {
+                for( int i = so * 4, j = dof * 4, end = (so + run) * 4; i < end; i += 2, j += 2 ) {
+                    to[j] = from[i] + dx;
+                    to[j + 1] = from[i + 1] + dy;
+                }
+            }
+            k += run;
+        }
+    }
+}
@@ -2,33 +2,55 @@ package turtle;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A turtle's state includes a 2D position, a heading, and a pen color.  The turtle
  * can be moved forward and turned.  When the turtle moves, it traces a line from the starting
  * position to the ending position using the pen color.  Nothing is actually drawn
  * to the screen however, until draw is called.
+ *
+ * Every segment is kept in memory unless retention is turned off with setRetainSegments.
+ * Segments can also be streamed as they are produced to any number of SegmentSinks.
+ *
+ * A turtle's whole state, including its history, can be saved with snapshot and restored
+ * later, or copied into a new turtle with fork.  Both take constant time, because the
+ * history is shared until one of the turtles draws over it (see {@link SegmentStore#fork()}).
  */
 public class Turtle {
 
-    /** The turtle's heading is in radians and is measured clockwise from the +y axis. */
+    /**
+     * The turtle's heading is in degrees, measured clockwise from the +y axis and kept
+     * in the range [0, 360).  Its sine and cosine are cached whenever it changes.
+     */
     private double heading;
+    private double sinHeading;
+    private double cosHeading;
+
+    // Compensation terms for Kahan summation of the position, when enabled
+    private boolean compensated = false;
+    private double compX, compY;
 
     private Point2D.Double location; // turtle's position
-    private List<LineSegment> lines; // list of line segments produced by this turtle
+    private SegmentStore segments;   // line segments produced by this turtle
     private PenColor penColor;       // the turtle's current pen color
+    private boolean retainSegments = true;
+    private SegmentSink[] sinks = new SegmentSink[0];
 
-    // The GUI to display the turtle's drawing
-    private TurtleGUI gui = null;
+    // The forward moves not yet reported in a JFR event, when metrics are enabled
+    private TurtleMetrics.ForwardBatchEvent metricsBatch;
+
+    // Set once a GUI has been requested to display the turtle's drawing
+    private final AtomicBoolean guiRequested = new AtomicBoolean(false);
 
     /**
      * Constructs a turtle with default configuration.  The initial position is (0,0)
      * and initial heading is 0.0.
      */
     public Turtle() {
-        lines = new ArrayList<>();
+        segments = new SegmentStore();
         location = new Point2D.Double();
         reset();
     }
@@ -37,9 +59,11 @@ public class Turtle {
      * Resets the turtle to (0,0) with heading 0.0.  The history of lines drawn is also cleared.
      */
     public void reset() {
-        heading = 0.0;
+        setHeading(0.0);
         location.setLocation(0,0);
-        lines.clear();
+        compX = 0.0;
+        compY = 0.0;
+        segments.clear();
         penColor = PenColor.BLACK;
     }
 
@@ -51,8 +75,11 @@ public class Turtle {
         return new Point2D.Double( location.x, location.y );
     }
 
+    /**
+     * @return the turtle's heading in degrees, in the range [0, 360)
+     */
     public double getHeading() {
-        return Math.toDegrees(heading);
+        return heading;
     }
 
     /**
@@ -61,9 +88,26 @@ public class Turtle {
      * @param degrees the change in degrees.  A positive value is clockwise.
      */
     public void turn( double degrees ) {
-        // Convert to radians
-        double angleRad = Math.toRadians(degrees);
-        this.heading += angleRad;
+        setHeading(heading + degrees);
+    }
+
+    /**
+     * Turns on or off compensated (Kahan) summation of the turtle's position.  With it on,
+     * the round-off from each move is carried into the next one, so that very long
+     * drawings stay accurate.  It is off by default.
+     *
+     * @param on true to compensate
+     */
+    public void setCompensatedSummation( boolean on ) {
+        this.compensated = on;
+        compX = 0.0;
+        compY = 0.0;
+    }
+
+    private void setHeading( double degrees ) {
+        heading = HeadingMath.normalize(degrees);
+        sinHeading = HeadingMath.sin(heading);
+        cosHeading = HeadingMath.cos(heading);
     }
 
     /**
@@ -72,12 +116,213 @@ public class Turtle {
      * @param distance the distance to move.
      */
     public void forward(double distance ) {
-        double newX = location.x + Math.sin(heading) * distance;
-        double newY = location.y + Math.cos(heading) * distance;
+        double newX, newY;
+        if( compensated ) {
+            double dx = sinHeading * distance - compX;
+            double dy = cosHeading * distance - compY;
+            newX = location.x + dx;
+            newY = location.y + dy;
+            compX = (newX - location.x) - dx;
+            compY = (newY - location.y) - dy;
+        } else {
+            newX = location.x + sinHeading * distance;
+            newY = location.y + cosHeading * distance;
+        }
+
+        if( retainSegments ) segments.add(penColor, location.x, location.y, newX, newY);
+        for( SegmentSink sink : sinks ) {
+            sink.accept(penColor, location.x, location.y, newX, newY);
+        }
+        location.setLocation(newX, newY);
+        if( TurtleMetrics.enabled ) countSegments(1);
+        else if( metricsBatch != null ) metricsBatch = null;
+    }
+
+    // Counts the moves at once, and groups them into batches for the JFR event
+    private void countSegments( int n ) {
+        TurtleMetrics.segmentsGenerated(n);
+        if( metricsBatch == null ) {
+            metricsBatch = new TurtleMetrics.ForwardBatchEvent();
+            metricsBatch.begin();
+        }
+        metricsBatch.segments += n;
+        if( metricsBatch.segments >= TurtleMetrics.FORWARD_BATCH_SIZE ) flushMetrics();
+    }
+
+    /**
+     * Emits the JFR event for the forward moves made since the last full batch.  A batch
+     * left over when metrics are turned off is dropped at the next move.
+     */
+    void flushMetrics() {
+        if( metricsBatch != null ) {
+            TurtleMetrics.forwardBatch(metricsBatch);
+            metricsBatch = null;
+        }
+    }
+
+    /**
+     * Moves the turtle through the first n of the given points in order, drawing a line to
+     * each one with the current pen color, as if it turned to face each point and moved
+     * forward.  The segments end exactly on the points, and the turtle is left at the last
+     * point facing the direction of the last move that had any length.
+     */
+    void moveThrough( double[] xs, double[] ys, int n ) {
+        if( n == 0 ) return;
+        if( retainSegments ) segments.addPath(penColor, location.x, location.y, xs, ys, n);
+        if( sinks.length > 0 ) {
+            double x = location.x, y = location.y;
+            for( int i = 0; i < n; i++ ) {
+                for( SegmentSink sink : sinks ) sink.accept(penColor, x, y, xs[i], ys[i]);
+                x = xs[i];
+                y = ys[i];
+            }
+        }
+
+        for( int i = n - 1; i >= 0; i-- ) {
+            double dx = xs[i] - (i > 0 ? xs[i - 1] : location.x);
+            double dy = ys[i] - (i > 0 ? ys[i - 1] : location.y);
+            if( dx != 0.0 || dy != 0.0 ) {
+                setHeading(Math.toDegrees(Math.atan2(dx, dy)));
+                break;
+            }
+        }
+        location.setLocation(xs[n - 1], ys[n - 1]);
+        compX = 0.0;
+        compY = 0.0;
+        if( TurtleMetrics.enabled ) countSegments(n);
+        else if( metricsBatch != null ) metricsBatch = null;
+    }
+
+    /**
+     * Adds a sink that receives every segment as it is produced by forward.
+     *
+     * @param sink the sink
+     */
+    public void addSink( SegmentSink sink ) {
+        if( sink == null ) throw new IllegalArgumentException("sink is null");
+        sinks = Arrays.copyOf(sinks, sinks.length + 1);
+        sinks[sinks.length - 1] = sink;
+    }
+
+    /**
+     * Removes a sink added with addSink.
+     *
+     * @param sink the sink
+     * @return true if the sink was found
+     */
+    public boolean removeSink( SegmentSink sink ) {
+        for( int i = 0; i < sinks.length; i++ ) {
+            if( sinks[i] == sink ) {
+                SegmentSink[] copy = new SegmentSink[sinks.length - 1];
+                System.arraycopy(sinks, 0, copy, 0, i);
+                System.arraycopy(sinks, i + 1, copy, i, sinks.length - i - 1);
+                sinks = copy;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The saved state of a turtle: its position, heading, pen color and segment history.
+     * A snapshot never changes, and may be restored any number of times, on any thread.
+     */
+    public static final class Snapshot {
+        private final double x, y;
+        private final double heading, sinHeading, cosHeading;
+        private final double compX, compY;
+        private final PenColor penColor;
+        private final SegmentStore segments;
+
+        private Snapshot( Turtle t ) {
+            x = t.location.x;
+            y = t.location.y;
+            heading = t.heading;
+            sinHeading = t.sinHeading;
+            cosHeading = t.cosHeading;
+            compX = t.compX;
+            compY = t.compY;
+            penColor = t.penColor;
+            segments = t.segments.fork();
+        }
+
+        public Point2D.Double getLocation() { return new Point2D.Double(x, y); }
+        public double getHeading() { return heading; }
+        public PenColor getPen() { return penColor; }
+        public int getSegmentCount() { return segments.size(); }
+    }
+
+    /**
+     * Saves the turtle's current state.  This takes constant time no matter how many
+     * segments have been drawn.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Returns the turtle to a saved state, replacing its position, heading, pen color and
+     * segment history.  The snapshot may have been taken from a different turtle.  Sinks,
+     * segment retention and the summation mode are not changed.
+     *
+     * @param snapshot the state to restore
+     */
+    public void restore( Snapshot snapshot ) {
+        location.setLocation(snapshot.x, snapshot.y);
+        heading = snapshot.heading;
+        sinHeading = snapshot.sinHeading;
+        cosHeading = snapshot.cosHeading;
+        compX = snapshot.compX;
+        compY = snapshot.compY;
+        penColor = snapshot.penColor;
+        segments.shareFrom(snapshot.segments);
+    }
+
+    /**
+     * Creates a new turtle in the same state as this one, with the same history, in
+     * constant time.  The two turtles draw independently from then on.  The new turtle
+     * has no sinks and has not displayed a GUI, but keeps the retention and summation modes.
+     *
+     * @return the new turtle
+     */
+    public Turtle fork() {
+        Turtle copy = new Turtle();
+        copy.retainSegments = retainSegments;
+        copy.compensated = compensated;
+        copy.restore(snapshot());
+        return copy;
+    }
+
+    /**
+     * Sets whether segments are kept in the turtle's history.  Turning this off keeps the
+     * turtle's memory use constant for long-running drawings whose output is streamed to
+     * sinks, but then draw, getLines and getSegments only see segments produced while
+     * retention was on.
+     *
+     * @param retain true to keep segments in memory (the default)
+     */
+    public void setRetainSegments( boolean retain ) {
+        this.retainSegments = retain;
+    }
 
-        Point2D.Double dest = new Point2D.Double(newX, newY);
-        lines.add( new LineSegment(penColor, location, dest) );
-        location.setLocation(dest);
+    /**
+     * Shrinks the turtle's history by merging connected, collinear segments of the same
+     * color and, if the tolerance is positive, by dropping points that are within the
+     * tolerance of a simplified line.  The turtle's position, heading and pen are unchanged.
+     *
+     * @param tolerance the largest distance a dropped point may be from the simplified
+     *   line.  Use 0.0 to only merge collinear segments.
+     * @return the number of segments before and after
+     * @see SegmentSimplifier
+     */
+    public SegmentSimplifier.Report simplify( double tolerance ) {
+        SegmentStore simplified = new SegmentStore(segments.size());
+        SegmentSimplifier.Report report = new SegmentSimplifier().simplify(segments, simplified, tolerance);
+        segments.clear();
+        segments.addAll(simplified);
+        return report;
     }
 
     /**
@@ -87,19 +332,48 @@ public class Turtle {
      * in the UI.
      */
     public void draw() {
-        // Not thread safe
-        if( gui == null ) {
-            EventQueue.invokeLater(() -> {
-                gui = new TurtleGUI(this);
-                gui.draw();
-            });
+        draw(TurtleGUI.DEFAULT_VELOCITY);
+    }
+
+    /**
+     * Displays a GUI and animates the turtle's stored line segments at the given speed.
+     *
+     * @param velocity the number of segments drawn per second, or Double.POSITIVE_INFINITY
+     *   to draw as fast as the display allows
+     * @see #draw()
+     */
+    public void draw( double velocity ) {
+        flushMetrics();
+        if( guiRequested.compareAndSet(false, true) ) {
+            EventQueue.invokeLater(() -> new TurtleGUI(this, velocity).draw());
         }
     }
 
     /**
-     * @return the list of line segments drawn by this turtle.
+     * Displays a GUI and draws all of the turtle's stored line segments immediately,
+     * without animation.  This is much faster for large drawings.
+     *
+     * @see #draw()
+     */
+    public void drawAll() {
+        flushMetrics();
+        if( guiRequested.compareAndSet(false, true) ) {
+            EventQueue.invokeLater(() -> new TurtleGUI(this).drawAll());
+        }
+    }
+
+    /**
+     * @return a read-only view of the line segments drawn by this turtle.  LineSegment
+     *   objects are created as they are accessed, so prefer getSegments() for large drawings.
      */
     public List<LineSegment> getLines() {
-        return lines;
+        return segments.asList();
+    }
+
+    /**
+     * @return the packed store of line segments drawn by this turtle.
+     */
+    public SegmentStore getSegments() {
+        return segments;
     }
 }
@@ -2,43 +2,87 @@ package turtle;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.geom.Line2D;
-import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
-import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * A GUI for displaying a drawing produced by a Turtle.
+ * A GUI for displaying a drawing produced by a Turtle or a TurtleScene.  The view can be zoomed with
+ * the mouse wheel, panned by dragging, and reset with a double click.  Hovering over a
+ * line shows which segment it is.
  */
 public class TurtleGUI {
 
     private DrawPanel drawPanel;
     private BufferedImage image;
-    private Turtle turtle;
+    private SegmentStore segments;
     private AtomicBoolean drawing;
+    private double velocity;   // segments drawn per second
+
+    // The canvas graphics and the view are shared by the animation thread and the EDT
+    private final Object canvasLock = new Object();
+    private Graphics2D canvas;
+    private double scale = 1.0;             // pixels per turtle unit
+    private double viewX = 0.0, viewY = 0.0; // turtle coordinates at the center of the view
+    private volatile int drawnCount = 0;    // number of segments drawn so far
+    private volatile SegmentIndex index;    // built in the background when the view first changes
+    private boolean indexing = false;
+
+    /** The default animation speed, in segments per second. */
+    static final double DEFAULT_VELOCITY = 150.0;
 
     private static final int CANVAS_SIZE = 800;
-    private static final long ANIMATION_DELAY = 100;
+    private static final int FRAME_RATE = 60;
+    private static final long FRAME_PERIOD_NANOS = 1_000_000_000L / FRAME_RATE;
+    // Time within a frame that may be spent drawing segments, leaving room for painting
+    private static final long FRAME_BUDGET_NANOS = FRAME_PERIOD_NANOS * 3 / 4;
     private static final Color BACKGROUND_COLOR = Color.WHITE;
+    private static final double ZOOM_STEP = 1.25;
+    private static final double HIT_TOLERANCE_PIXELS = 3.0;
 
     private class DrawPanel extends JPanel {
         @Override
         protected void paintComponent(Graphics g) {
+            long start = TurtleMetrics.enabled ? System.nanoTime() : 0L;
             super.paintComponent(g);
             g.drawImage(image, 0, 0, this);
+            if( TurtleMetrics.enabled ) TurtleMetrics.paint(System.nanoTime() - start);
         }
     }
 
     public TurtleGUI(Turtle t) {
+        this(t.getSegments(), DEFAULT_VELOCITY);
+    }
+
+    public TurtleGUI(Turtle t, double velocity) {
+        this(t.getSegments(), velocity);
+    }
+
+    /**
+     * @param segments the segments to display
+     * @param velocity the animation speed in segments per second.  Use
+     *   Double.POSITIVE_INFINITY to draw as many segments per frame as the frame budget allows.
+     */
+    public TurtleGUI(SegmentStore segments, double velocity) {
+        if( !(velocity > 0.0) ) throw new IllegalArgumentException("velocity must be positive");
+        this.velocity = velocity;
         this.drawPanel = new DrawPanel();
         this.drawPanel.setBackground(BACKGROUND_COLOR);
-        this.turtle = t;
+        this.segments = segments;
         this.image = new BufferedImage(CANVAS_SIZE,CANVAS_SIZE,BufferedImage.TYPE_INT_ARGB);
+        this.canvas = image.createGraphics();
         this.drawing = new AtomicBoolean(false);
 
+        ViewListener listener = new ViewListener();
+        this.drawPanel.addMouseListener(listener);
+        this.drawPanel.addMouseMotionListener(listener);
+        this.drawPanel.addMouseWheelListener(listener);
+
         JFrame frame = new JFrame("PLU Turtle");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.add(this.drawPanel, BorderLayout.CENTER);
@@ -51,45 +95,235 @@ public class TurtleGUI {
     public void draw() {
         if( ! drawing.compareAndSet(false, true) ) return;
 
-        List<LineSegment> lines = turtle.getLines();
-        Graphics2D g = (Graphics2D)image.getGraphics();
-
-        AnimationRunnable runnable = new AnimationRunnable(lines, g);
+        AnimationRunnable runnable = new AnimationRunnable(segments);
         ExecutorService serv = Executors.newSingleThreadExecutor();
         serv.submit(runnable);
         serv.shutdown();
     }
 
+    /**
+     * Draws all of the segments at once, without animation, batching runs
+     * of same-colored segments into single draw calls.
+     */
+    public void drawAll() {
+        if( ! drawing.compareAndSet(false, true) ) return;
+
+        synchronized( canvasLock ) {
+            drawnCount = segments.size();
+            if( scale == 1.0 && viewX == 0.0 && viewY == 0.0 ) {
+                BatchedPathRenderer.drawBatched(canvas, segments, CANVAS_SIZE, CANVAS_SIZE);
+                drawPanel.repaint();
+            } else {
+                redraw();
+            }
+        }
+    }
+
+    /**
+     * Zooms the view, keeping the turtle position under the given pixel fixed.
+     */
+    private void zoomAt( int px, int py, double factor ) {
+        synchronized( canvasLock ) {
+            double wx = toWorldX(px), wy = toWorldY(py);
+            scale *= factor;
+            viewX = wx - (px - CANVAS_SIZE / 2) / scale;
+            viewY = wy - (CANVAS_SIZE - py - CANVAS_SIZE / 2) / scale;
+            redraw();
+        }
+    }
+
+    private void panBy( int dx, int dy ) {
+        synchronized( canvasLock ) {
+            viewX -= dx / scale;
+            viewY += dy / scale;
+            redraw();
+        }
+    }
+
+    private void resetView() {
+        synchronized( canvasLock ) {
+            scale = 1.0;
+            viewX = 0.0;
+            viewY = 0.0;
+            redraw();
+        }
+    }
+
+    /**
+     * Clears the canvas and draws the segments drawn so far that are inside the view.
+     * Must be called while holding canvasLock.
+     */
+    private void redraw() {
+        canvas.setComposite(AlphaComposite.Clear);
+        canvas.fillRect(0, 0, CANVAS_SIZE, CANVAS_SIZE);
+        canvas.setComposite(AlphaComposite.SrcOver);
+
+        int limit = drawnCount;
+        SegmentIndex built = index();
+        // Until the index is built, draw every segment and let the clip cull them
+        int[] visible = built == null ? null : built.query(toWorldX(-1), toWorldY(CANVAS_SIZE + 1),
+                toWorldX(CANVAS_SIZE + 1), toWorldY(-1));
+        int count = visible == null ? limit : visible.length;
+        Line2D.Double line = new Line2D.Double();
+        PenColor current = null;
+        for( int k = 0; k < count; k++ ) {
+            int i = visible == null ? k : visible[k];
+            if( i >= limit ) break;
+            if( segments.getColor(i) != current ) {
+                current = segments.getColor(i);
+                canvas.setColor(current.asColor());
+            }
+            line.setLine(toScreenX(segments.getX0(i)), toScreenY(segments.getY0(i)),
+                    toScreenX(segments.getX1(i)), toScreenY(segments.getY1(i)));
+            canvas.draw(line);
+        }
+        drawPanel.repaint();
+    }
+
+    /**
+     * Returns the index of the segments, or null if it isn't built yet.  The first call
+     * starts building it on another thread, so a large drawing doesn't block the EDT.
+     */
+    private SegmentIndex index() {
+        SegmentIndex built = index;
+        if( built != null ) return built;
+        synchronized( canvasLock ) {
+            if( ! indexing ) {
+                indexing = true;
+                ExecutorService serv = Executors.newSingleThreadExecutor();
+                serv.submit(() -> { index = new SegmentIndex(segments); });
+                serv.shutdown();
+            }
+        }
+        return null;
+    }
+
+    // Translate and invert y, applying the zoom and pan of the view
+    private double toScreenX( double x ) { return (x - viewX) * scale + CANVAS_SIZE / 2; }
+    private double toScreenY( double y ) { return CANVAS_SIZE - ((y - viewY) * scale + CANVAS_SIZE / 2); }
+    private double toWorldX( double px ) { return viewX + (px - CANVAS_SIZE / 2) / scale; }
+    private double toWorldY( double py ) { return viewY + (CANVAS_SIZE - py - CANVAS_SIZE / 2) / scale; }
+
+    private class ViewListener extends MouseAdapter {
+        private Point last;
+
+        @Override
+        public void mousePressed( MouseEvent e ) { last = e.getPoint(); }
+
+        @Override
+        public void mouseDragged( MouseEvent e ) {
+            if( last == null ) return;
+            panBy(e.getX() - last.x, e.getY() - last.y);
+            last = e.getPoint();
+        }
+
+        @Override
+        public void mouseClicked( MouseEvent e ) {
+            if( e.getClickCount() == 2 ) resetView();
+        }
+
+        @Override
+        public void mouseWheelMoved( MouseWheelEvent e ) {
+            zoomAt(e.getX(), e.getY(), Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()));
+        }
+
+        @Override
+        public void mouseMoved( MouseEvent e ) {
+            if( drawnCount == 0 ) return;
+            SegmentIndex built = index();
+            int hit = -1;
+            if( built != null ) {
+                synchronized( canvasLock ) {
+                    hit = built.hitTest(toWorldX(e.getX()), toWorldY(e.getY()), HIT_TOLERANCE_PIXELS / scale);
+                }
+            }
+            if( hit >= 0 && hit < drawnCount ) {
+                drawPanel.setToolTipText("Segment " + hit + " (" + segments.getColor(hit) + ")");
+            } else {
+                drawPanel.setToolTipText(null);
+            }
+        }
+    }
+
     private class AnimationRunnable implements Runnable {
-        private final List<LineSegment> lines;
-        private final Graphics2D g;
-        private final double velocity = 150.0;
+        private final SegmentStore segments;
 
-        AnimationRunnable( List<LineSegment> lines, Graphics2D g ) {
-            this.lines = lines;
-            this.g = g;
+        AnimationRunnable( SegmentStore segments ) {
+            this.segments = segments;
         }
 
+        /**
+         * Draws the segments a frame at a time.  Each frame draws the segments that are due
+         * at the current velocity, stopping early if the frame budget runs out (the remaining
+         * segments carry over to the next frame), and repaints only the area they cover.
+         */
         @Override
         public void run() {
-            int center = CANVAS_SIZE / 2;
-            Point2D.Double animatedLocation = new Point2D.Double();
             Line2D.Double line = new Line2D.Double();
-            for( LineSegment ls : lines ) {
-                g.setColor(ls.getPenColor().asColor());
-                Point2D.Double start = ls.getStart();
-                Point2D.Double end = ls.getEnd();
-
-                // Translate and invert y
-                line.setLine(start.x + center,
-                        CANVAS_SIZE - (start.y + center),
-                        end.x + center,
-                        CANVAS_SIZE - (end.y + center));
-
-                g.draw(line);
-                drawPanel.repaint();
-                try{ Thread.sleep(ANIMATION_DELAY ); }
-                catch(InterruptedException ex) { return; }
+            SegmentStore.Cursor cursor = segments.cursor();
+            int total = segments.size();
+            int drawn = 0;
+            long start = System.nanoTime();
+
+            while( drawn < total ) {
+                long frameStart = System.nanoTime();
+                TurtleMetrics.AnimationFrameEvent frameEvent = null;
+                if( TurtleMetrics.enabled ) {
+                    frameEvent = new TurtleMetrics.AnimationFrameEvent();
+                    frameEvent.begin();
+                }
+                int drawnBefore = drawn;
+                double due = (frameStart - start) / 1e9 * velocity;
+                int target = due >= total ? total : (int)due + 1;
+
+                double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+                double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+                synchronized( canvasLock ) {
+                    PenColor current = null;
+                    while( drawn < target ) {
+                        // The store shrank (reset or simplify), so there is nothing more to draw
+                        if( ! cursor.next() ) {
+                            total = drawn;
+                            break;
+                        }
+                        if( cursor.color() != current ) {
+                            current = cursor.color();
+                            canvas.setColor(current.asColor());
+                        }
+
+                        line.setLine(toScreenX(cursor.x0()), toScreenY(cursor.y0()),
+                                toScreenX(cursor.x1()), toScreenY(cursor.y1()));
+                        canvas.draw(line);
+                        drawn++;
+
+                        minX = Math.min(minX, Math.min(line.x1, line.x2));
+                        maxX = Math.max(maxX, Math.max(line.x1, line.x2));
+                        minY = Math.min(minY, Math.min(line.y1, line.y2));
+                        maxY = Math.max(maxY, Math.max(line.y1, line.y2));
+
+                        if( (drawn & 0xFF) == 0 && System.nanoTime() - frameStart > FRAME_BUDGET_NANOS ) break;
+                    }
+                    drawnCount = drawn;
+                }
+                if( frameEvent != null ) {
+                    frameEvent.segments = drawn - drawnBefore;
+                    frameEvent.drawn = drawn;
+                    frameEvent.total = total;
+                    TurtleMetrics.animationFrame(frameEvent, System.nanoTime() - frameStart);
+                }
+
+                if( minX <= maxX ) {
+                    // Pad by a pixel to cover the stroke
+                    int x = (int)Math.floor(minX) - 1;
+                    int y = (int)Math.floor(minY) - 1;
+                    drawPanel.repaint(x, y, (int)Math.ceil(maxX) + 2 - x, (int)Math.ceil(maxY) + 2 - y);
+                }
+
+                long sleepNanos = frameStart + FRAME_PERIOD_NANOS - System.nanoTime();
+                if( sleepNanos > 0 ) {
+                    try{ Thread.sleep(sleepNanos / 1_000_000, (int)(sleepNanos % 1_000_000)); }
+                    catch(InterruptedException ex) { return; }
+                }
             }
         }
     }
@@ -0,0 +1,186 @@
+package turtle;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for where the time goes in a drawing: segments generated by turtles, time spent
+ * waiting on a {@link QueuedSegmentSink}, segments drawn per animation frame, and how long
+ * the drawing panel takes to paint.  Turtles also emit JDK Flight Recorder events for every
+ * batch of forward moves ({@code turtle.ForwardBatch}) and every animation frame
+ * ({@code turtle.AnimationFrame}).
+ *
+ * Metrics are off by default, and then cost little more than a flag check where they are
+ * recorded.  Turn them on with setEnabled, with the JMX attribute of the same name, or by
+ * starting the JVM with {@code -Dturtle.metrics=true}.  Once enabled, the counters are registered with the
+ * platform MBean server so that they can be watched with JConsole or Mission Control.
+ */
+public final class TurtleMetrics implements TurtleMetricsMXBean {
+
+    /** The JMX name of the metrics. */
+    public static final String OBJECT_NAME = "turtle:type=TurtleMetrics";
+
+    /** The number of forward moves reported together, in one JFR event. */
+    static final int FORWARD_BATCH_SIZE = 4096;
+
+    private static final int HISTOGRAM_BUCKETS = 21;
+    private static final TurtleMetrics INSTANCE = new TurtleMetrics();
+
+    // Read on every forward move, so this is the only thing checked when metrics are off
+    static volatile boolean enabled = false;
+    private static boolean registered = false;
+
+    private final LongAdder segmentsGenerated = new LongAdder();
+    private final LongAdder segmentsDrawn = new LongAdder();
+    private final LongAdder animationFrames = new LongAdder();
+    private final LongAdder animationNanos = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAdder[] paintHistogram = new LongAdder[HISTOGRAM_BUCKETS];
+
+    static {
+        for( int i = 0; i < HISTOGRAM_BUCKETS; i++ ) INSTANCE.paintHistogram[i] = new LongAdder();
+        if( Boolean.getBoolean("turtle.metrics") ) INSTANCE.setEnabled(true);
+    }
+
+    private TurtleMetrics() { }
+
+    /**
+     * @return the metrics for this JVM
+     */
+    public static TurtleMetrics get() {
+        return INSTANCE;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled( boolean on ) {
+        if( on ) register();
+        enabled = on;
+    }
+
+    @Override
+    public long getSegmentsGenerated() { return segmentsGenerated.sum(); }
+
+    @Override
+    public long getSegmentsDrawn() { return segmentsDrawn.sum(); }
+
+    @Override
+    public double getSegmentsDrawnPerSecond() {
+        long nanos = animationNanos.sum();
+        return nanos == 0 ? 0.0 : segmentsDrawn.sum() / (nanos / 1e9);
+    }
+
+    @Override
+    public long getAnimationFrames() { return animationFrames.sum(); }
+
+    @Override
+    public double getQueueWaitMillis() { return queueWaitNanos.sum() / 1e6; }
+
+    @Override
+    public long getPaintCount() {
+        long n = 0;
+        for( LongAdder bucket : paintHistogram ) n += bucket.sum();
+        return n;
+    }
+
+    @Override
+    public long[] getPaintTimeHistogram() {
+        long[] counts = new long[HISTOGRAM_BUCKETS];
+        for( int i = 0; i < HISTOGRAM_BUCKETS; i++ ) counts[i] = paintHistogram[i].sum();
+        return counts;
+    }
+
+    @Override
+    public void reset() {
+        segmentsGenerated.reset();
+        segmentsDrawn.reset();
+        animationFrames.reset();
+        animationNanos.reset();
+        queueWaitNanos.reset();
+        for( LongAdder bucket : paintHistogram ) bucket.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("generated=%d drawn=%d (%.0f/s) frames=%d queueWait=%.1fms paints=%d",
+                getSegmentsGenerated(), getSegmentsDrawn(), getSegmentsDrawnPerSecond(),
+                getAnimationFrames(), getQueueWaitMillis(), getPaintCount());
+    }
+
+    static void segmentsGenerated( int n ) {
+        INSTANCE.segmentsGenerated.add(n);
+    }
+
+    /**
+     * Commits the event for a batch of forward moves, which have already been counted.
+     */
+    static void forwardBatch( ForwardBatchEvent event ) {
+        event.commit();
+    }
+
+    /**
+     * Records an animation frame that drew the given number of segments and commits its event.
+     */
+    static void animationFrame( AnimationFrameEvent event, long nanos ) {
+        INSTANCE.segmentsDrawn.add(event.segments);
+        INSTANCE.animationFrames.increment();
+        INSTANCE.animationNanos.add(nanos);
+        event.commit();
+    }
+
+    static void queueWait( long nanos ) {
+        INSTANCE.queueWaitNanos.add(nanos);
+    }
+
+    static void paint( long nanos ) {
+        long micros = nanos / 1000;
+        int bucket = Math.min(HISTOGRAM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        INSTANCE.paintHistogram[bucket].increment();
+    }
+
+    private static synchronized void register() {
+        if( registered ) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch( JMException e ) {
+            throw new IllegalStateException("could not register turtle metrics", e);
+        }
+        registered = true;
+    }
+
+    @Name("turtle.ForwardBatch")
+    @Label("Forward Batch")
+    @Category("Turtle")
+    @Description("A batch of forward moves made by one turtle")
+    static class ForwardBatchEvent extends Event {
+        @Label("Segments")
+        int segments;
+    }
+
+    @Name("turtle.AnimationFrame")
+    @Label("Animation Frame")
+    @Category("Turtle")
+    @Description("Drawing the segments of one animation frame")
+    static class AnimationFrameEvent extends Event {
+        @Label("Segments")
+        int segments;
+
+        @Label("Segments Drawn So Far")
+        int drawn;
+
+        @Label("Total Segments")
+        int total;
+    }
+}
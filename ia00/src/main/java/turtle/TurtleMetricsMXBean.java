@@ -0,0 +1,40 @@
+package turtle;
+
+/**
+ * The management interface of {@link TurtleMetrics}, registered with the platform MBean
+ * server as {@value TurtleMetrics#OBJECT_NAME}.
+ */
+public interface TurtleMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled( boolean enabled );
+
+    /** @return the number of segments produced by turtles */
+    long getSegmentsGenerated();
+
+    /** @return the number of segments drawn by animations */
+    long getSegmentsDrawn();
+
+    /** @return segments drawn per second of animation time */
+    double getSegmentsDrawnPerSecond();
+
+    /** @return the number of animation frames */
+    long getAnimationFrames();
+
+    /** @return the total time producers spent blocked on full segment queues, in milliseconds */
+    double getQueueWaitMillis();
+
+    /** @return the number of paints of a drawing panel */
+    long getPaintCount();
+
+    /**
+     * @return the paint time histogram.  Bucket 0 counts paints under a microsecond, and
+     *   bucket i counts paints that took from 2^(i-1) up to 2^i microseconds.  The last
+     *   bucket also counts anything longer.
+     */
+    long[] getPaintTimeHistogram();
+
+    /** Sets all of the counters back to zero. */
+    void reset();
+}
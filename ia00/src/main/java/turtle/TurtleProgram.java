@@ -0,0 +1,325 @@
+package turtle;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A compiled sequence of turtle commands: forward, turn, set pen and repeat, plus the
+ * symbol expansions used by L-systems (see {@link LSystem}).  Commands are stored as a
+ * compact int array with a table of numeric arguments, and are interpreted with a small
+ * explicit stack, so a program whose expansion would produce billions of segments takes
+ * only as much memory as its own code.
+ *
+ * A program can be replayed onto any Turtle, streamed to a SegmentSink, or read one
+ * segment at a time with a {@link Cursor}.  Segments are produced by a Turtle in every case,
+ * so all three give exactly the same coordinates.
+ */
+public class TurtleProgram {
+
+    static final int FORWARD = 0;   // FORWARD argIndex
+    static final int TURN = 1;      // TURN argIndex
+    static final int PEN = 2;       // PEN colorOrdinal
+    static final int REPEAT = 3;    // REPEAT count bodyLength, followed by the body
+    static final int EXPAND = 4;    // EXPAND symbol
+
+    private static final PenColor[] COLORS = PenColor.values();
+
+    private final int[] code;
+    private final double[] args;
+    private final int mainEnd;        // the main block is code[0 .. mainEnd)
+    private final int[] ruleStart;    // per symbol, the code that replaces it, or -1
+    private final int[] ruleEnd;
+    private final int[] actionStart;  // per symbol, the commands it stands for
+    private final int[] actionEnd;
+    private final int depth;          // number of rewrites applied to the main block
+
+    TurtleProgram( int[] code, double[] args, int mainEnd, int[] ruleStart, int[] ruleEnd,
+                   int[] actionStart, int[] actionEnd, int depth ) {
+        this.code = code;
+        this.args = args;
+        this.mainEnd = mainEnd;
+        this.ruleStart = ruleStart;
+        this.ruleEnd = ruleEnd;
+        this.actionStart = actionStart;
+        this.actionEnd = actionEnd;
+        this.depth = depth;
+    }
+
+    /**
+     * @return a builder for a plain (non L-system) program
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Runs this program on a turtle, starting from the turtle's current state.
+     *
+     * @param t the turtle
+     */
+    public void replay( Turtle t ) {
+        Interpreter interpreter = new Interpreter();
+        while( interpreter.step(t) ) { }
+    }
+
+    /**
+     * Sends every segment of this program, in order, to a sink.  A private turtle starting
+     * at (0,0) with heading 0 and a black pen is used, and no segments are kept in memory.
+     *
+     * @param sink the sink
+     */
+    public void generate( SegmentSink sink ) {
+        Turtle t = new Turtle();
+        t.setRetainSegments(false);
+        t.addSink(sink);
+        replay(t);
+        t.flushMetrics();
+    }
+
+    /**
+     * @return a cursor over the segments of this program, starting from a fresh turtle
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Returns the segments of this program as a lazy stream.  Segments are generated as
+     * the stream is consumed, so the whole drawing never needs to be in memory.
+     *
+     * @return a sequential stream of segments
+     */
+    public Stream<LineSegment> segments() {
+        Cursor cursor = cursor();
+        Spliterator<LineSegment> split = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE) {
+            @Override
+            public boolean tryAdvance( Consumer<? super LineSegment> action ) {
+                if( ! cursor.next() ) return false;
+                action.accept(new LineSegment(cursor.color(), cursor.x0(), cursor.y0(), cursor.x1(), cursor.y1()));
+                return true;
+            }
+        };
+        return StreamSupport.stream(split, false);
+    }
+
+    /**
+     * Reads the segments of a program one at a time, generating each one on demand.
+     * Call {@link #next()} before reading the first segment.
+     */
+    public class Cursor implements SegmentSink {
+        private final Interpreter interpreter = new Interpreter();
+        private final Turtle turtle = new Turtle();
+        private PenColor color;
+        private double x0, y0, x1, y1;
+        private boolean produced;
+
+        Cursor() {
+            turtle.setRetainSegments(false);
+            turtle.addSink(this);
+        }
+
+        /**
+         * Advances to the next segment.
+         *
+         * @return false if the program has no more segments
+         */
+        public boolean next() {
+            produced = false;
+            while( ! produced ) {
+                if( ! interpreter.step(turtle) ) {
+                    turtle.flushMetrics();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public PenColor color() { return color; }
+        public double x0() { return x0; }
+        public double y0() { return y0; }
+        public double x1() { return x1; }
+        public double y1() { return y1; }
+
+        @Override
+        public void accept( PenColor color, double x0, double y0, double x1, double y1 ) {
+            this.color = color;
+            this.x0 = x0;
+            this.y0 = y0;
+            this.x1 = x1;
+            this.y1 = y1;
+            produced = true;
+        }
+    }
+
+    /**
+     * Executes the program's code one command at a time.  Each frame on the stack is a block
+     * of code (the main block, a repeat body, a rule or an action) with its own position.
+     */
+    private class Interpreter {
+        private int[] pc = new int[16];
+        private int[] end = new int[16];
+        private int[] start = new int[16];
+        private int[] repeatsLeft = new int[16];
+        private int[] frameDepth = new int[16];
+        private int top = -1;
+
+        Interpreter() {
+            push(0, mainEnd, 1, depth);
+        }
+
+        /**
+         * Executes commands until one forward move has been made.
+         *
+         * @return false if the program is finished
+         */
+        boolean step( Turtle t ) {
+            while( top >= 0 ) {
+                if( pc[top] >= end[top] ) {
+                    if( --repeatsLeft[top] > 0 ) {
+                        pc[top] = start[top];
+                    } else {
+                        top--;
+                    }
+                    continue;
+                }
+
+                int i = pc[top];
+                switch( code[i] ) {
+                    case FORWARD:
+                        pc[top] = i + 2;
+                        t.forward(args[code[i + 1]]);
+                        return true;
+                    case TURN:
+                        pc[top] = i + 2;
+                        t.turn(args[code[i + 1]]);
+                        break;
+                    case PEN:
+                        pc[top] = i + 2;
+                        t.setPen(COLORS[code[i + 1]]);
+                        break;
+                    case REPEAT: {
+                        int count = code[i + 1], length = code[i + 2];
+                        pc[top] = i + 3 + length;
+                        if( count > 0 && length > 0 ) push(i + 3, i + 3 + length, count, frameDepth[top]);
+                        break;
+                    }
+                    case EXPAND: {
+                        int symbol = code[i + 1];
+                        int d = frameDepth[top];
+                        pc[top] = i + 2;
+                        if( d > 0 && ruleStart[symbol] >= 0 ) {
+                            push(ruleStart[symbol], ruleEnd[symbol], 1, d - 1);
+                        } else if( actionStart[symbol] < actionEnd[symbol] ) {
+                            push(actionStart[symbol], actionEnd[symbol], 1, 0);
+                        }
+                        break;
+                    }
+                    default:
+                        throw new IllegalStateException("bad opcode " + code[i] + " at " + i);
+                }
+            }
+            return false;
+        }
+
+        private void push( int from, int to, int repeats, int d ) {
+            top++;
+            if( top == pc.length ) {
+                int n = pc.length * 2;
+                pc = Arrays.copyOf(pc, n);
+                end = Arrays.copyOf(end, n);
+                start = Arrays.copyOf(start, n);
+                repeatsLeft = Arrays.copyOf(repeatsLeft, n);
+                frameDepth = Arrays.copyOf(frameDepth, n);
+            }
+            pc[top] = from;
+            start[top] = from;
+            end[top] = to;
+            repeatsLeft[top] = repeats;
+            frameDepth[top] = d;
+        }
+    }
+
+    /**
+     * Builds a program from a sequence of commands.
+     */
+    public static class Builder {
+        private int[] code = new int[32];
+        private int size = 0;
+        private double[] args = new double[8];
+        private int argCount = 0;
+        // the index of each distinct argument, by Double.doubleToLongBits
+        private final HashMap<Long, Integer> argIndex = new HashMap<>();
+
+        Builder() { }
+
+        public Builder forward( double distance ) {
+            return emit(FORWARD, arg(distance));
+        }
+
+        public Builder turn( double degrees ) {
+            return emit(TURN, arg(degrees));
+        }
+
+        public Builder setPen( PenColor color ) {
+            return emit(PEN, color.ordinal());
+        }
+
+        /**
+         * Repeats the commands added by body the given number of times.
+         *
+         * @param count the number of repetitions
+         * @param body adds the commands to repeat
+         */
+        public Builder repeat( int count, Consumer<Builder> body ) {
+            if( count < 0 ) throw new IllegalArgumentException("count must not be negative");
+            emit(REPEAT, count);
+            emitWord(0);
+            int bodyStart = size;
+            body.accept(this);
+            code[bodyStart - 1] = size - bodyStart;
+            return this;
+        }
+
+        Builder expand( int symbol ) {
+            return emit(EXPAND, symbol);
+        }
+
+        /**
+         * @return the program made of the commands added so far
+         */
+        public TurtleProgram build() {
+            return new TurtleProgram(Arrays.copyOf(code, size), Arrays.copyOf(args, argCount), size,
+                    new int[0], new int[0], new int[0], new int[0], 0);
+        }
+
+        int size() { return size; }
+        int[] code() { return Arrays.copyOf(code, size); }
+        double[] args() { return Arrays.copyOf(args, argCount); }
+
+        private int arg( double value ) {
+            Integer index = argIndex.get(Double.doubleToLongBits(value));
+            if( index != null ) return index;
+            if( argCount == args.length ) args = Arrays.copyOf(args, argCount * 2);
+            args[argCount] = value;
+            argIndex.put(Double.doubleToLongBits(value), argCount);
+            return argCount++;
+        }
+
+        private Builder emit( int op, int operand ) {
+            emitWord(op);
+            emitWord(operand);
+            return this;
+        }
+
+        private void emitWord( int word ) {
+            if( size == code.length ) code = Arrays.copyOf(code, size * 2);
+            code[size++] = word;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package turtle;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders a turtle's segments into an image without a GUI, so drawings can be
+ * produced on machines with no display.  The canvas is recursively split into tiles that
+ * are rendered in parallel on a fork-join pool.  Each split only passes on the segments
+ * that touch the smaller region, so the leaf tiles draw just their own share.
+ *
+ * The coordinate transform matches TurtleGUI: the origin is at the center of
+ * the image and the y axis points up.
+ */
+public class TurtleRasterizer {
+
+    private static final int DEFAULT_TILE_SIZE = 128;
+    private static final Color BACKGROUND_COLOR = Color.WHITE;
+
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs a rasterizer that uses the common fork-join pool.
+     *
+     * @param width the width of the image in pixels
+     * @param height the height of the image in pixels
+     */
+    public TurtleRasterizer( int width, int height ) {
+        this(width, height, DEFAULT_TILE_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param width the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @param tileSize the largest tile (in pixels on a side) that is rendered by a single task
+     * @param pool the pool used to render tiles
+     */
+    public TurtleRasterizer( int width, int height, int tileSize, ForkJoinPool pool ) {
+        if( width <= 0 || height <= 0 ) throw new IllegalArgumentException("image size must be positive");
+        if( tileSize <= 0 ) throw new IllegalArgumentException("tile size must be positive");
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.pool = pool;
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+
+    /**
+     * Renders the segments into a new image.
+     *
+     * @param segments the segments to draw
+     * @return an opaque image with a white background
+     */
+    public BufferedImage render( SegmentStore segments ) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(BACKGROUND_COLOR);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+
+        pool.invoke(new TileTask(image, segments, 0, 0, width, height, null, segments.size()));
+        return image;
+    }
+
+    /**
+     * Renders the segments and writes the image to a PNG file.
+     *
+     * @param segments the segments to draw
+     * @param file the destination file
+     * @throws IOException if the file can't be written
+     */
+    public void writePng( SegmentStore segments, Path file ) throws IOException {
+        try( OutputStream out = Files.newOutputStream(file) ) {
+            writePng(segments, out);
+        }
+    }
+
+    /**
+     * Renders the segments and writes the image in PNG format to the stream.
+     *
+     * @param segments the segments to draw
+     * @param out the destination stream, which is not closed
+     * @throws IOException if writing fails
+     */
+    public void writePng( SegmentStore segments, OutputStream out ) throws IOException {
+        BufferedImage image = render(segments);
+        if( ! ImageIO.write(image, "png", out) )
+            throw new IOException("No PNG writer available");
+    }
+
+    private double toScreenX( double x ) { return x + width / 2; }
+    private double toScreenY( double y ) { return height - (y + height / 2); }
+
+    /**
+     * Draws the segments that touch one region of the image, or splits the region into
+     * four and renders the parts in parallel.
+     */
+    private class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BufferedImage image;
+        private final SegmentStore segments;
+        private final int x, y, w, h;
+        private final int[] ids;   // indices of the segments touching this region, or null for all
+        private final int count;
+
+        TileTask( BufferedImage image, SegmentStore segments, int x, int y, int w, int h, int[] ids, int count ) {
+            this.image = image;
+            this.segments = segments;
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.h = h;
+            this.ids = ids;
+            this.count = count;
+        }
+
+        @Override
+        protected void compute() {
+            if( count == 0 ) return;
+            if( w <= tileSize && h <= tileSize ) {
+                drawTile();
+                return;
+            }
+
+            int halfW = w > tileSize ? w / 2 : w;
+            int halfH = h > tileSize ? h / 2 : h;
+            if( halfW < w && halfH < h ) {
+                invokeAll(split(new int[][] {
+                        {x, y, halfW, halfH},
+                        {x + halfW, y, w - halfW, halfH},
+                        {x, y + halfH, halfW, h - halfH},
+                        {x + halfW, y + halfH, w - halfW, h - halfH}}));
+            } else if( halfW < w ) {
+                invokeAll(split(new int[][] {{x, y, halfW, h}, {x + halfW, y, w - halfW, h}}));
+            } else {
+                invokeAll(split(new int[][] {{x, y, w, halfH}, {x, y + halfH, w, h - halfH}}));
+            }
+        }
+
+        // Sorts this region's segments into subregions, each given as {x, y, w, h}.  Each
+        // segment is converted to screen coordinates once and tested against every
+        // subregion; the id arrays grow as needed and are trimmed to size.
+        private TileTask[] split( int[][] regions ) {
+            int parts = regions.length;
+            int[][] childIds = new int[parts][];
+            int[] n = new int[parts];
+            for( int c = 0; c < parts; c++ ) childIds[c] = new int[Math.min(count, 16)];
+
+            for( int k = 0; k < count; k++ ) {
+                int i = ids == null ? k : ids[k];
+                double x0 = toScreenX(segments.getX0(i)), x1 = toScreenX(segments.getX1(i));
+                double y0 = toScreenY(segments.getY0(i)), y1 = toScreenY(segments.getY1(i));
+                double left = Math.min(x0, x1), right = Math.max(x0, x1);
+                double top = Math.min(y0, y1), bottom = Math.max(y0, y1);
+                for( int c = 0; c < parts; c++ ) {
+                    int[] r = regions[c];
+                    // Allow a pixel of slack so that the stroke of a line along the edge is not lost
+                    if( right < r[0] - 1 || left > r[0] + r[2] + 1 ) continue;
+                    if( bottom < r[1] - 1 || top > r[1] + r[3] + 1 ) continue;
+                    if( n[c] == childIds[c].length )
+                        childIds[c] = Arrays.copyOf(childIds[c], Math.min(count, 2 * n[c]));
+                    childIds[c][n[c]++] = i;
+                }
+            }
+
+            TileTask[] tasks = new TileTask[parts];
+            for( int c = 0; c < parts; c++ ) {
+                int[] r = regions[c];
+                int[] trimmed = n[c] == childIds[c].length ? childIds[c] : Arrays.copyOf(childIds[c], n[c]);
+                tasks[c] = new TileTask(image, segments, r[0], r[1], r[2], r[3], trimmed, n[c]);
+            }
+            return tasks;
+        }
+
+        private void drawTile() {
+            Graphics2D g = image.getSubimage(x, y, w, h).createGraphics();
+            g.translate(-x, -y);
+            Line2D.Double line = new Line2D.Double();
+            PenColor current = null;
+            for( int k = 0; k < count; k++ ) {
+                int i = ids == null ? k : ids[k];
+                PenColor color = segments.getColor(i);
+                if( color != current ) {
+                    g.setColor(color.asColor());
+                    current = color;
+                }
+                line.setLine(toScreenX(segments.getX0(i)), toScreenY(segments.getY0(i)),
+                        toScreenX(segments.getX1(i)), toScreenY(segments.getY1(i)));
+                g.draw(line);
+            }
+            g.dispose();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package turtle;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * A drawing made by many independent turtles.  Each turtle's program runs on its own
+ * Turtle in parallel on a work-stealing fork-join pool.  When all programs are done, their
+ * segments are merged into a single store, in the order the programs were added: each
+ * turtle's segments are copied in parallel into a precomputed range of the result, so no
+ * lock is needed.
+ *
+ * Each program gets a fresh Turtle, which is only used by the thread running the program.
+ */
+public class TurtleScene {
+
+    private static class Entry {
+        final double originX, originY;
+        final Consumer<Turtle> program;
+
+        Entry( double originX, double originY, Consumer<Turtle> program ) {
+            this.originX = originX;
+            this.originY = originY;
+            this.program = program;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final ForkJoinPool pool;
+    private SegmentStore result = null;
+
+    /**
+     * Constructs an empty scene that runs on the common fork-join pool.
+     */
+    public TurtleScene() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool the pool that runs the turtles' programs
+     */
+    public TurtleScene( ForkJoinPool pool ) {
+        this.pool = pool;
+    }
+
+    /**
+     * Adds a turtle whose drawing is centered at the origin of the scene.
+     *
+     * @param program the moves made by the turtle
+     * @return the number of turtles in the scene
+     */
+    public int add( Consumer<Turtle> program ) {
+        return add(0.0, 0.0, program);
+    }
+
+    /**
+     * Adds a turtle whose drawing is shifted so that it starts at (x, y).
+     *
+     * @param x the x coordinate of the turtle's starting position in the scene
+     * @param y the y coordinate of the turtle's starting position in the scene
+     * @param program the moves made by the turtle
+     * @return the number of turtles in the scene
+     */
+    public synchronized int add( double x, double y, Consumer<Turtle> program ) {
+        if( program == null ) throw new IllegalArgumentException("program is null");
+        entries.add(new Entry(x, y, program));
+        result = null;
+        return entries.size();
+    }
+
+    /**
+     * Runs every turtle's program in parallel and merges their segments.  The result is
+     * cached until another turtle is added.
+     *
+     * @return the segments of all turtles, ordered by the turtle they came from
+     */
+    public synchronized SegmentStore run() {
+        if( result != null ) return result;
+
+        Entry[] scene = entries.toArray(new Entry[0]);
+        SegmentStore[] parts = new SegmentStore[scene.length];
+        pool.submit(() -> IntStream.range(0, scene.length).parallel().forEach(i -> {
+            Turtle t = new Turtle();
+            scene[i].program.accept(t);
+            t.flushMetrics();
+            parts[i] = t.getSegments();
+        })).join();
+
+        int[] offsets = new int[scene.length + 1];
+        for( int i = 0; i < scene.length; i++ ) {
+            offsets[i + 1] = Math.addExact(offsets[i], parts[i].size());
+        }
+
+        SegmentStore merged = new SegmentStore(0);
+        merged.resize(offsets[scene.length]);
+        pool.submit(() -> IntStream.range(0, scene.length).parallel().forEach(i ->
+                merged.copyFrom(parts[i], offsets[i], scene[i].originX, scene[i].originY)
+        )).join();
+
+        result = merged;
+        return result;
+    }
+
+    /**
+     * Runs the scene and animates the combined drawing in a GUI.
+     *
+     * @param velocity the number of segments drawn per second
+     */
+    public void draw( double velocity ) {
+        SegmentStore segments = run();
+        EventQueue.invokeLater(() -> new TurtleGUI(segments, velocity).draw());
+    }
+
+    /**
+     * Runs the scene and shows the combined drawing in a GUI without animation.
+     */
+    public void drawAll() {
+        SegmentStore segments = run();
+        EventQueue.invokeLater(() -> new TurtleGUI(segments, TurtleGUI.DEFAULT_VELOCITY).drawAll());
+    }
+}
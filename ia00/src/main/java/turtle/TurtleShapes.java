@@ -86,6 +86,23 @@ public class TurtleShapes {
         throw new RuntimeException("Not implemented yet.");
     }
 
+    /**
+     * Draw a straight line through the given points in the order provided.  This version is
+     * meant for very long paths, such as GPS traces: the points are given as arrays of
+     * coordinates and the segments are appended to the turtle in a single pass, without
+     * creating an object per point.  The turtle ends on the last point, facing the direction
+     * of the last move.
+     *
+     * @param t a Turtle.
+     * @param xs the x coordinates of the points
+     * @param ys the y coordinates of the points
+     * @throws IllegalArgumentException if the arrays have different lengths
+     */
+    public static void drawThroughPoints( Turtle t, double[] xs, double[] ys ) {
+        if( xs.length != ys.length ) throw new IllegalArgumentException("xs and ys must have the same length");
+        t.moveThrough(xs, ys, xs.length);
+    }
+
     /**
      * Draw your own, custom piece of art!  Many interesting images can be drawn using this simple turtle.
      * See the assignment for examples.
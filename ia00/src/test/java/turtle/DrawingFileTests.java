@@ -0,0 +1,79 @@
+package turtle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DrawingFileTests {
+
+    @TempDir
+    Path dir;
+
+    private static SegmentStore sample() {
+        SegmentStore store = new SegmentStore();
+        Turtle t = new Turtle();
+        t.addSink(store);
+        t.setRetainSegments(false);
+        PenColor[] colors = PenColor.values();
+        for( int i = 0; i < 20_000; i++ ) {
+            if( i % 777 == 0 ) t.setPen(colors[i % colors.length]);
+            t.forward(0.5 + i % 13);
+            t.turn(37.3);
+        }
+        // A few segments that are not connected to the one before
+        store.add(PenColor.RED, 1000, -1000, 1001, -999);
+        store.add(PenColor.RED, -5, 5, 5, -5);
+        return store;
+    }
+
+    @Test
+    public void roundTripWithinQuantization() throws IOException {
+        SegmentStore original = sample();
+        Path file = dir.resolve("drawing.turtle");
+        DrawingFile.write(original, file);
+
+        SegmentStore loaded = DrawingFile.load(file);
+        assertEquals(original.size(), loaded.size());
+        double step = 1.0 / DrawingFile.DEFAULT_SCALE;
+        for( int i = 0; i < original.size(); i++ ) {
+            assertEquals(original.getColor(i), loaded.getColor(i));
+            assertEquals(original.getX0(i), loaded.getX0(i), step);
+            assertEquals(original.getY1(i), loaded.getY1(i), step);
+        }
+        assertTrue(Files.size(file) < original.size() * 8L, "file should average under 8 bytes per segment");
+    }
+
+    @Test
+    public void replayAcrossSmallMappingWindows() throws IOException {
+        SegmentStore original = sample();
+        Path file = dir.resolve("drawing.turtle");
+        DrawingFile.write(original, file);
+
+        SegmentStore replayed = new SegmentStore();
+        assertEquals(original.size(), DrawingFile.replay(file, replayed, 100));
+        assertEquals(DrawingFile.load(file).getX1(original.size() - 1), replayed.getX1(original.size() - 1), 0.0);
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        Path file = dir.resolve("other.txt");
+        Files.writeString(file, "not a drawing at all, really");
+        assertThrows(IOException.class, () -> DrawingFile.load(file));
+
+        // A drawing whose header has a negative segment count
+        Path corrupt = dir.resolve("corrupt.turtle");
+        DrawingFile.write(sample(), corrupt);
+        byte[] bytes = Files.readAllBytes(corrupt);
+        ByteBuffer.wrap(bytes).putLong(16, -1L);
+        Files.write(corrupt, bytes);
+        assertThrows(IOException.class, () -> DrawingFile.load(corrupt));
+    }
+}
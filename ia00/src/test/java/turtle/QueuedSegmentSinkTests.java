@@ -0,0 +1,40 @@
+package turtle;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class QueuedSegmentSinkTests {
+
+    @Test
+    public void streamsAllSegmentsInOrder() {
+        SegmentStore received = new SegmentStore();
+        Turtle t = new Turtle();
+        t.setRetainSegments(false);
+        try( QueuedSegmentSink sink = new QueuedSegmentSink(received, 100, 2) ) {
+            t.addSink(sink);
+            for( int i = 0; i < 10_000; i++ ) {
+                t.forward(1);
+                t.turn(7);
+            }
+        }
+
+        assertEquals(0, t.getSegments().size());
+        assertEquals(10_000, received.size());
+        assertEquals(0.0, received.getX0(0), 0.0);
+        assertEquals(t.getLocation().x, received.getX1(9_999), 0.0);
+        for( int i = 1; i < received.size(); i++ ) {
+            assertEquals(received.getX1(i - 1), received.getX0(i), 0.0);
+        }
+    }
+
+    @Test
+    public void downstreamFailureReachesProducer() {
+        QueuedSegmentSink sink = new QueuedSegmentSink((color, x0, y0, x1, y1) -> {
+            throw new IllegalArgumentException("boom");
+        }, 10, 1);
+        for( int i = 0; i < 5; i++ ) sink.accept(PenColor.BLACK, 0, 0, 1, 1);
+        assertThrows(IllegalStateException.class, sink::close);
+    }
+}
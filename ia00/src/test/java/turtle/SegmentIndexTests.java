@@ -0,0 +1,102 @@
+package turtle;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SegmentIndexTests {
+
+    private static SegmentStore randomWalk( int count, long seed ) {
+        Random rand = new Random(seed);
+        Turtle t = new Turtle();
+        for( int i = 0; i < count; i++ ) {
+            t.forward(rand.nextDouble() * 20);
+            t.turn(rand.nextDouble() * 360);
+        }
+        return t.getSegments();
+    }
+
+    @Test
+    public void queryMatchesBruteForce() {
+        SegmentStore segments = randomWalk(2000, 1);
+        SegmentIndex index = new SegmentIndex(segments);
+        Rectangle2D.Double rect = new Rectangle2D.Double(-30, -10, 45, 25);
+
+        int[] expected = new int[segments.size()];
+        int n = 0;
+        for( int i = 0; i < segments.size(); i++ ) {
+            if( rect.intersectsLine(segments.getX0(i), segments.getY0(i), segments.getX1(i), segments.getY1(i)) )
+                expected[n++] = i;
+        }
+        assertArrayEquals(java.util.Arrays.copyOf(expected, n),
+                index.query(rect.x, rect.y, rect.x + rect.width, rect.y + rect.height));
+    }
+
+    @Test
+    public void longSegmentsMatchBruteForce() {
+        // Long diagonals across the whole grid, like the spiral BatchedPathRenderer draws
+        Turtle t = new Turtle();
+        for( int i = 0; i < 20000; i++ ) {
+            t.forward(1 + i % 400);
+            t.turn(121);
+        }
+        SegmentStore segments = t.getSegments();
+        SegmentIndex index = new SegmentIndex(segments);
+        Random rand = new Random(4);
+        for( int k = 0; k < 20; k++ ) {
+            double x = rand.nextDouble() * 500 - 250, y = rand.nextDouble() * 500 - 250;
+            Rectangle2D.Double rect = new Rectangle2D.Double(x, y, rand.nextDouble() * 20, rand.nextDouble() * 20);
+            int[] expected = new int[segments.size()];
+            int n = 0;
+            double best = Double.POSITIVE_INFINITY;
+            for( int i = 0; i < segments.size(); i++ ) {
+                if( rect.intersectsLine(segments.getX0(i), segments.getY0(i), segments.getX1(i), segments.getY1(i)) )
+                    expected[n++] = i;
+                best = Math.min(best, Line2D.ptSegDistSq(segments.getX0(i), segments.getY0(i),
+                        segments.getX1(i), segments.getY1(i), x, y));
+            }
+            assertArrayEquals(java.util.Arrays.copyOf(expected, n),
+                    index.query(rect.x, rect.y, rect.x + rect.width, rect.y + rect.height));
+            int found = index.nearest(x, y);
+            assertEquals(best, Line2D.ptSegDistSq(segments.getX0(found), segments.getY0(found),
+                    segments.getX1(found), segments.getY1(found), x, y), 1e-9);
+        }
+    }
+
+    @Test
+    public void nearestMatchesBruteForce() {
+        SegmentStore segments = randomWalk(2000, 2);
+        SegmentIndex index = new SegmentIndex(segments);
+        Random rand = new Random(3);
+        for( int k = 0; k < 50; k++ ) {
+            double x = rand.nextDouble() * 600 - 300, y = rand.nextDouble() * 600 - 300;
+            double best = Double.POSITIVE_INFINITY;
+            for( int i = 0; i < segments.size(); i++ ) {
+                best = Math.min(best, Line2D.ptSegDistSq(segments.getX0(i), segments.getY0(i),
+                        segments.getX1(i), segments.getY1(i), x, y));
+            }
+            int found = index.nearest(x, y);
+            assertEquals(best, Line2D.ptSegDistSq(segments.getX0(found), segments.getY0(found),
+                    segments.getX1(found), segments.getY1(found), x, y), 1e-9);
+        }
+    }
+
+    @Test
+    public void hitTestReturnsTopmostSegment() {
+        SegmentStore segments = new SegmentStore();
+        segments.add(PenColor.RED, -10, 0, 10, 0);
+        segments.add(PenColor.BLUE, 0, -10, 0, 10);
+        segments.add(PenColor.GREEN, 50, 50, 60, 60);
+        SegmentIndex index = new SegmentIndex(segments);
+
+        assertEquals(1, index.hitTest(0.5, 0.5, 1.0));
+        assertEquals(0, index.hitTest(5, 0.5, 1.0));
+        assertEquals(-1, index.hitTest(30, 30, 1.0));
+        assertEquals(2, index.nearest(100, 100));
+    }
+}
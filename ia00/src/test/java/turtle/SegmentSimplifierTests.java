@@ -0,0 +1,50 @@
+package turtle;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SegmentSimplifierTests {
+
+    @Test
+    public void collinearStepsMergeIntoSides() {
+        Turtle t = new Turtle();
+        for( int side = 0; side < 4; side++ ) {
+            for( int step = 0; step < 10; step++ ) t.forward(10);
+            t.turn(90);
+        }
+
+        SegmentSimplifier.Report report = t.simplify(0.0);
+        assertEquals(40, report.getBefore());
+        assertEquals(4, report.getAfter());
+        assertEquals(4, t.getSegments().size());
+        assertEquals(100.0, t.getSegments().getY1(0), 1e-9);
+    }
+
+    @Test
+    public void colorChangeAndReversalAreKept() {
+        Turtle t = new Turtle();
+        t.forward(10);
+        t.forward(10);
+        t.setPen(PenColor.RED);
+        t.forward(10);
+        t.turn(180);
+        t.forward(5);
+
+        assertEquals(3, t.simplify(0.0).getAfter());
+        assertEquals(PenColor.RED, t.getSegments().getColor(1));
+    }
+
+    @Test
+    public void toleranceDropsNearbyPoints() {
+        Turtle t = new Turtle();
+        t.turn(90);
+        for( int i = 0; i < 100; i++ ) {
+            t.turn(i % 2 == 0 ? 1 : -1);
+            t.forward(1);
+        }
+        assertEquals(1, t.simplify(0.1).getAfter());
+        assertThrows(IllegalArgumentException.class, () -> t.simplify(-1.0));
+    }
+}
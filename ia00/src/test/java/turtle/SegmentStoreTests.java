@@ -0,0 +1,111 @@
+package turtle;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SegmentStoreTests {
+
+    @Test
+    public void addGrowsPastInitialCapacity() {
+        SegmentStore store = new SegmentStore(1);
+        for( int i = 0; i < 1000; i++ ) {
+            store.add(PenColor.RED, i, i, i + 1, i + 1);
+        }
+        assertEquals(1000, store.size());
+        assertEquals(999.0, store.getX0(999), 0.0);
+        assertEquals(1000.0, store.getY1(999), 0.0);
+        assertEquals(PenColor.RED, store.getColor(500));
+    }
+
+    @Test
+    public void cursorVisitsSegmentsInOrder() {
+        SegmentStore store = new SegmentStore();
+        store.add(PenColor.BLACK, 0, 0, 1, 2);
+        store.add(PenColor.BLUE, 1, 2, 3, 4);
+
+        SegmentStore.Cursor cursor = store.cursor();
+        assertTrue(cursor.next());
+        assertEquals(PenColor.BLACK, cursor.color());
+        assertEquals(2.0, cursor.y1(), 0.0);
+        assertTrue(cursor.next());
+        assertEquals(PenColor.BLUE, cursor.color());
+        assertEquals(1.0, cursor.x0(), 0.0);
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    public void forEachRange() {
+        SegmentStore store = new SegmentStore();
+        for( int i = 0; i < 10; i++ ) store.add(PenColor.GREEN, i, 0, i, 1);
+
+        double[] sum = {0.0};
+        store.forEach(2, 5, (i, color, x0, y0, x1, y1) -> sum[0] += x0);
+        assertEquals(9.0, sum[0], 0.0);
+        assertThrows(IndexOutOfBoundsException.class, () -> store.forEach(5, 11, (i, color, x0, y0, x1, y1) -> {}));
+    }
+
+    @Test
+    public void turtleLinesViewIsLazy() {
+        Turtle t = new Turtle();
+        List<LineSegment> lines = t.getLines();
+        assertEquals(0, lines.size());
+
+        t.setPen(PenColor.ORANGE);
+        t.forward(10);
+        assertEquals(1, lines.size());
+        Point2D.Double end = lines.get(0).getEnd();
+        assertEquals(0.0, end.x, 0.0001);
+        assertEquals(10.0, end.y, 0.0001);
+        assertEquals(PenColor.ORANGE, lines.get(0).getPenColor());
+        assertThrows(UnsupportedOperationException.class, () -> lines.remove(0));
+
+        t.reset();
+        assertTrue(lines.isEmpty());
+    }
+
+    @Test
+    public void forksShareHistoryButNotChanges() {
+        SegmentStore store = new SegmentStore();
+        for( int i = 0; i < 10_000; i++ ) store.add(PenColor.BLACK, i, 0, i + 1, 0);
+        SegmentStore fork = store.fork();
+
+        store.add(PenColor.RED, -1, -1, -2, -2);
+        fork.add(PenColor.BLUE, 5, 5, 6, 6);
+        fork.clear();
+        fork.add(PenColor.GREEN, 7, 7, 8, 8);
+
+        assertEquals(10_001, store.size());
+        assertEquals(0.0, store.getX0(0), 0.0);
+        assertEquals(PenColor.RED, store.getColor(10_000));
+        assertEquals(1, fork.size());
+        assertEquals(PenColor.GREEN, fork.getColor(0));
+
+        SegmentStore.Cursor cursor = store.cursor();
+        int n = 0;
+        while( cursor.next() ) {
+            if( n < 10_000 ) assertEquals(n, cursor.x0(), 0.0);
+            n++;
+        }
+        assertEquals(10_001, n);
+    }
+
+    @Test
+    public void addAllCrossesChunks() {
+        SegmentStore a = new SegmentStore();
+        SegmentStore b = new SegmentStore();
+        for( int i = 0; i < 5000; i++ ) a.add(PenColor.RED, i, 0, i, 1);
+        for( int i = 0; i < 7000; i++ ) b.add(PenColor.BLUE, 0, i, 1, i);
+        a.addAll(b);
+        assertEquals(12_000, a.size());
+        assertEquals(4999.0, a.getX0(4999), 0.0);
+        assertEquals(PenColor.BLUE, a.getColor(5000));
+        assertEquals(6999.0, a.getY0(11_999), 0.0);
+    }
+}
@@ -0,0 +1,52 @@
+package turtle;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TurtleMetricsTests {
+
+    @Test
+    public void countsEveryForwardMove() {
+        TurtleMetrics metrics = TurtleMetrics.get();
+        metrics.setEnabled(true);
+        try {
+            metrics.reset();
+            Turtle t = new Turtle();
+            for( int i = 0; i < TurtleMetrics.FORWARD_BATCH_SIZE + 10; i++ ) t.forward(1.0);
+            assertEquals(TurtleMetrics.FORWARD_BATCH_SIZE + 10, metrics.getSegmentsGenerated());
+            t.moveThrough(new double[] {1.0, 2.0}, new double[] {0.0, 0.0}, 2);
+            assertEquals(TurtleMetrics.FORWARD_BATCH_SIZE + 12, metrics.getSegmentsGenerated());
+        } finally {
+            metrics.setEnabled(false);
+            metrics.reset();
+        }
+    }
+
+    @Test
+    public void nothingIsCountedWhenDisabled() {
+        TurtleMetrics metrics = TurtleMetrics.get();
+        metrics.reset();
+        Turtle t = new Turtle();
+        for( int i = 0; i < 10_000; i++ ) t.forward(1.0);
+        assertEquals(0, metrics.getSegmentsGenerated());
+    }
+
+    @Test
+    public void paintTimesAreBucketedByPowersOfTwo() {
+        TurtleMetrics metrics = TurtleMetrics.get();
+        metrics.reset();
+        TurtleMetrics.paint(500);          // under a microsecond
+        TurtleMetrics.paint(3_000);        // [2, 4) us
+        TurtleMetrics.paint(3_999);
+        TurtleMetrics.paint(Long.MAX_VALUE);
+        long[] histogram = metrics.getPaintTimeHistogram();
+        assertEquals(1, histogram[0]);
+        assertEquals(2, histogram[2]);
+        assertEquals(1, histogram[histogram.length - 1]);
+        assertEquals(4, metrics.getPaintCount());
+        metrics.reset();
+        assertArrayEquals(new long[histogram.length], metrics.getPaintTimeHistogram());
+    }
+}
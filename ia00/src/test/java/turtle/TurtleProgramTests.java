@@ -0,0 +1,74 @@
+package turtle;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TurtleProgramTests {
+
+    @Test
+    public void repeatReplaysOntoTurtle() {
+        TurtleProgram square = TurtleProgram.builder()
+                .setPen(PenColor.BLUE)
+                .repeat(4, b -> b.forward(10).turn(90))
+                .build();
+
+        Turtle t = new Turtle();
+        square.replay(t);
+        assertEquals(4, t.getSegments().size());
+        assertEquals(PenColor.BLUE, t.getSegments().getColor(3));
+        assertEquals(0.0, t.getLocation().x, 1e-9);
+        assertEquals(0.0, t.getLocation().y, 1e-9);
+    }
+
+    @Test
+    public void nestedRepeat() {
+        TurtleProgram p = TurtleProgram.builder()
+                .repeat(3, outer -> outer.forward(1).repeat(0, inner -> inner.forward(5)).repeat(2, inner -> inner.forward(2)))
+                .build();
+        assertEquals(9L, p.segments().count());
+        assertEquals(15.0, p.segments().mapToDouble(ls -> ls.getEnd().y - ls.getStart().y).sum(), 1e-9);
+    }
+
+    @Test
+    public void lSystemExpandsLazily() {
+        LSystem koch = new LSystem("F--F--F")
+                .rule('F', "F+F--F+F")
+                .action('F', b -> b.forward(1))
+                .action('+', b -> b.turn(-60))
+                .action('-', b -> b.turn(60));
+
+        assertEquals(3L, koch.compile(0).segments().count());
+        assertEquals(3L * 4 * 4 * 4, koch.compile(3).segments().count());
+
+        // Far too many segments to materialize, but the first ones are available at once
+        TurtleProgram.Cursor cursor = koch.compile(20).cursor();
+        assertTrue(cursor.next());
+        assertEquals(1.0, cursor.y1(), 1e-9);
+    }
+
+    @Test
+    public void cursorMatchesReplay() {
+        TurtleProgram p = new LSystem("X")
+                .rule('X', "X+YF+")
+                .rule('Y', "-FX-Y")
+                .action('F', b -> b.forward(3))
+                .action('+', b -> b.turn(90))
+                .action('-', b -> b.turn(-90))
+                .compile(8);
+
+        Turtle t = new Turtle();
+        p.replay(t);
+        SegmentStore expected = t.getSegments();
+
+        TurtleProgram.Cursor cursor = p.cursor();
+        for( int i = 0; i < expected.size(); i++ ) {
+            assertTrue(cursor.next());
+            assertEquals(expected.getX1(i), cursor.x1(), 0.0);
+            assertEquals(expected.getY1(i), cursor.y1(), 0.0);
+        }
+        assertFalse(cursor.next());
+    }
+}
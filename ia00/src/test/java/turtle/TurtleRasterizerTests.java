@@ -0,0 +1,49 @@
+package turtle;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class TurtleRasterizerTests {
+
+    private static final int WHITE = 0xFFFFFFFF;
+
+    @Test
+    public void originIsCenterOfImage() {
+        Turtle t = new Turtle();
+        t.setPen(PenColor.RED);
+        t.forward(50);
+
+        BufferedImage image = new TurtleRasterizer(200, 100).render(t.getSegments());
+        assertEquals(0xFFFF0000, image.getRGB(100, 25));
+        assertEquals(WHITE, image.getRGB(100, 75));
+    }
+
+    @Test
+    public void tiledRenderMatchesSingleTile() {
+        Turtle t = new Turtle();
+        for( int i = 0; i < 360; i++ ) {
+            t.setPen(PenColor.values()[i % PenColor.values().length]);
+            t.forward(i);
+            t.turn(91);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        BufferedImage tiled = new TurtleRasterizer(400, 300, 16, pool).render(t.getSegments());
+        BufferedImage whole = new TurtleRasterizer(400, 300, 400, pool).render(t.getSegments());
+        pool.shutdown();
+
+        int drawn = 0;
+        for( int y = 0; y < 300; y++ ) {
+            for( int x = 0; x < 400; x++ ) {
+                assertEquals(whole.getRGB(x, y), tiled.getRGB(x, y));
+                if( whole.getRGB(x, y) != WHITE ) drawn++;
+            }
+        }
+        assertNotEquals(0, drawn);
+    }
+}
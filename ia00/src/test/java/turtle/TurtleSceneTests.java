@@ -0,0 +1,38 @@
+package turtle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class TurtleSceneTests {
+
+    @Test
+    public void mergesTurtlesInOrderWithOrigins() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        TurtleScene scene = new TurtleScene(pool);
+        for( int k = 0; k < 500; k++ ) {
+            int sides = 3 + k % 5;
+            scene.add(k * 10.0, -k, t -> {
+                for( int i = 0; i < sides; i++ ) {
+                    t.forward(5);
+                    t.turn(360.0 / sides);
+                }
+            });
+        }
+
+        SegmentStore merged = scene.run();
+        pool.shutdown();
+
+        int index = 0;
+        for( int k = 0; k < 500; k++ ) {
+            assertEquals(k * 10.0, merged.getX0(index), 1e-9);
+            assertEquals(-k, merged.getY0(index), 1e-9);
+            index += 3 + k % 5;
+        }
+        assertEquals(index, merged.size());
+        assertSame(merged, scene.run());
+    }
+}
@@ -0,0 +1,135 @@
+package turtle;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TurtleTests {
+
+    @Test
+    public void headingIsNormalized() {
+        Turtle t = new Turtle();
+        t.turn(-30);
+        assertEquals(330.0, t.getHeading(), 0.0);
+        t.turn(750);
+        assertEquals(0.0, t.getHeading(), 0.0);
+    }
+
+    @Test
+    public void manyTurnsDoNotDrift() {
+        Turtle t = new Turtle();
+        for( int i = 0; i < 1_000_000; i++ ) t.turn(1.0);
+        assertEquals(280.0, t.getHeading(), 0.0);
+
+        // Fractional turns keep their round-off, but stay on the table's whole degree
+        for( int i = 0; i < 3600; i++ ) t.turn(0.1);
+        assertEquals(280.0, t.getHeading(), 1e-9);
+    }
+
+    @Test
+    public void tinyTurnsAddUp() {
+        Turtle t = new Turtle();
+        for( int i = 0; i < 1000; i++ ) t.turn(1e-11);
+        assertEquals(1e-8, t.getHeading(), 1e-15);
+    }
+
+    @Test
+    public void squareClosesExactly() {
+        Turtle t = new Turtle();
+        for( int i = 0; i < 1000; i++ ) {
+            t.forward(345.0);
+            t.turn(90);
+        }
+        Point2D.Double end = t.getLocation();
+        assertEquals(0.0, end.x, 0.0);
+        assertEquals(0.0, end.y, 0.0);
+    }
+
+    @Test
+    public void integerPolygonCloses() {
+        Turtle t = new Turtle();
+        for( int i = 0; i < 360; i++ ) {
+            t.forward(1.0);
+            t.turn(1);
+        }
+        assertEquals(0.0, t.getLocation().x, 1e-12);
+        assertEquals(0.0, t.getLocation().y, 1e-12);
+        assertEquals(0.0, t.getHeading(), 0.0);
+    }
+
+    @Test
+    public void compensatedSummationStaysAccurate() {
+        Turtle t = new Turtle();
+        t.setCompensatedSummation(true);
+        t.turn(45);
+        for( int i = 0; i < 1_000_000; i++ ) t.forward(0.1);
+        double expected = 100_000 * Math.sin(Math.toRadians(45));
+        assertEquals(expected, t.getLocation().x, 1e-9);
+        assertEquals(expected, t.getLocation().y, 1e-9);
+    }
+
+    @Test
+    public void forkDrawsIndependently() {
+        Turtle t = new Turtle();
+        t.setPen(PenColor.RED);
+        t.turn(90);
+        t.forward(10);
+
+        Turtle fork = t.fork();
+        fork.turn(90);
+        fork.forward(5);
+        t.forward(1);
+
+        assertEquals(2, t.getSegments().size());
+        assertEquals(11.0, t.getLocation().x, 1e-12);
+        assertEquals(2, fork.getSegments().size());
+        assertEquals(180.0, fork.getHeading(), 0.0);
+        assertEquals(-5.0, fork.getLocation().y, 1e-12);
+        assertEquals(PenColor.RED, fork.getSegments().getColor(1));
+    }
+
+    @Test
+    public void restoreReturnsToSnapshot() {
+        Turtle t = new Turtle();
+        t.forward(3);
+        Turtle.Snapshot saved = t.snapshot();
+
+        t.setPen(PenColor.BLUE);
+        t.turn(45);
+        for( int i = 0; i < 5000; i++ ) t.forward(1);
+
+        t.restore(saved);
+        assertEquals(1, t.getSegments().size());
+        assertEquals(3.0, t.getLocation().y, 0.0);
+        assertEquals(0.0, t.getHeading(), 0.0);
+        t.forward(1);
+        assertEquals(PenColor.BLACK, t.getSegments().getColor(1));
+        assertEquals(1, saved.getSegmentCount());
+    }
+
+    @Test
+    public void drawThroughPointsAppendsPath() {
+        int n = 10_000;
+        double[] xs = new double[n], ys = new double[n];
+        for( int i = 0; i < n; i++ ) {
+            xs[i] = i + 1;
+            ys[i] = (i % 2 == 0) ? 0.0 : 1.0;
+        }
+        Turtle t = new Turtle();
+        t.forward(0.0);
+        t.setPen(PenColor.GREEN);
+        TurtleShapes.drawThroughPoints(t, xs, ys);
+
+        SegmentStore s = t.getSegments();
+        assertEquals(n + 1, s.size());
+        assertEquals(0.0, s.getX0(1), 0.0);
+        assertEquals(1.0, s.getX1(1), 0.0);
+        assertEquals(xs[4999], s.getX0(5001), 0.0);
+        assertEquals(ys[5000], s.getY1(5001), 0.0);
+        assertEquals(PenColor.GREEN, s.getColor(n));
+        assertEquals(n, t.getLocation().x, 0.0);
+        assertEquals(45.0, t.getHeading(), 1e-9);
+    }
+}
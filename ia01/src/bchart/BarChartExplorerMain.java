@@ -1,7 +1,88 @@
 package bchart;
 
+import bchart.model.BarChartDataset;
+import bchart.model.FrameRanking;
+import bchart.model.FrameWindow;
+import bchart.model.Tweener;
+import bchart.ui.BarChartAnimator;
+import bchart.ui.BarChartExporter;
+import bchart.ui.BarChartPanel;
+import bchart.ui.FramePlayer;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 public class BarChartExplorerMain {
-    public static void main(String[] args) {
-        // TODO: Implement this
+
+    private static final int BARS = 10;             // bars shown per frame
+    private static final int STEPS_PER_FRAME = 15;  // animation frames between data frames
+    private static final int EXPORT_WIDTH = 800;     // size of exported images
+    private static final int EXPORT_HEIGHT = 650;
+    // files larger than this are played a window at a time instead of being loaded
+    private static final long STREAM_THRESHOLD = 256L << 20;
+    private static final int STREAM_FRAME_RATE = 10;
+    private static final int STREAM_AHEAD = 256;      // frames decoded ahead of the playhead
+    private static final int STREAM_BEHIND = 16;      // frames kept behind it
+
+    /**
+     * Plays a bar chart race of a data file, or if an output directory is given, writes
+     * its frames there as PNG files instead (which works without a screen).  Files too
+     * large to load are played frame by frame through a window of prefetched frames.
+     *
+     * @param args the data file, cities.txt by default, and optionally an output directory
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path file = Path.of(args.length > 0 ? args[0] : "cities.txt");
+        if (args.length <= 1 && Files.size(file) > STREAM_THRESHOLD) {
+            stream(file);
+            return;
+        }
+        BarChartDataset data = BarChartDataset.load(file);
+        FrameRanking ranking = FrameRanking.compute(data, BARS);
+
+        if (args.length > 1) {
+            long start = System.nanoTime();
+            int frames = new BarChartExporter(new Tweener(ranking, STEPS_PER_FRAME), EXPORT_WIDTH, EXPORT_HEIGHT)
+                    .export(Path.of(args[1]));
+            System.out.printf("wrote %d frames to %s in %.1f s%n", frames, args[1], (System.nanoTime() - start) / 1e9);
+            return;
+        }
+
+        EventQueue.invokeLater(() -> {
+            BarChartPanel panel = new BarChartPanel();
+            panel.setTitle(data.getTitle());
+            panel.setXAxisLabel(data.getXAxisLabel());
+            panel.setDataSource(data.getSource());
+
+            JFrame frame = new JFrame("Bar Chart Explorer");
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            frame.add(panel, BorderLayout.CENTER);
+            frame.pack();
+            frame.setVisible(true);
+
+            new BarChartAnimator(panel, new Tweener(ranking, STEPS_PER_FRAME)).start();
+        });
+    }
+
+    // Plays a file without loading it, keeping only a window of frames around the playhead
+    private static void stream(Path file) throws IOException {
+        FrameWindow window = new FrameWindow(file, BARS, STREAM_AHEAD, STREAM_BEHIND);
+        EventQueue.invokeLater(() -> {
+            BarChartPanel panel = new BarChartPanel();
+            panel.setTitle(window.getReader().getTitle());
+            panel.setXAxisLabel(window.getReader().getXAxisLabel());
+            panel.setDataSource(window.getReader().getSource());
+
+            JFrame frame = new JFrame("Bar Chart Explorer");
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            frame.add(panel, BorderLayout.CENTER);
+            frame.pack();
+            frame.setVisible(true);
+
+            new FramePlayer(panel, window, STREAM_FRAME_RATE).start();
+        });
     }
 }
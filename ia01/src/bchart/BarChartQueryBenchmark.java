@@ -0,0 +1,104 @@
+package bchart;
+
+import bchart.model.BarChartDataset;
+import bchart.model.BarChartQuery;
+import bchart.model.BarChartQuery.GroupBy;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Times the aggregation queries on a synthetic dataset, on one thread and on all of them.
+ */
+public class BarChartQueryBenchmark {
+
+    private static final int FRAMES = 1000;
+    private static final int RECORDS_PER_FRAME = 4000;
+    private static final int NAMES = 20000;
+    private static final int COUNTRIES = 200;
+    private static final int CATEGORIES = 30;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    /**
+     * @param args the number of frames and records per frame, 1000 and 4000 by default
+     */
+    public static void main(String[] args) {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : FRAMES;
+        int perFrame = args.length > 1 ? Integer.parseInt(args[1]) : RECORDS_PER_FRAME;
+
+        long start = System.nanoTime();
+        BarChartDataset data = synthetic(frames, perFrame, new Random(390));
+        System.out.printf("%s built in %.0f ms%n", data, (System.nanoTime() - start) / 1e6);
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool all = ForkJoinPool.commonPool();
+        System.out.printf("%-24s %12s %12s%n", "query", "1 thread", all.getParallelism() + " threads");
+        time(data, "totals by category", single, all, q -> () -> q.totals(GroupBy.CATEGORY));
+        time(data, "totals by country", single, all, q -> () -> q.totals(GroupBy.COUNTRY));
+        time(data, "shares by category", single, all, q -> () -> q.shares(GroupBy.CATEGORY, 1000));
+        time(data, "top 10 by country", single, all, q -> () -> q.topCounts(GroupBy.COUNTRY, 10));
+        single.shutdown();
+    }
+
+    private interface Query {
+        Supplier<BarChartDataset> on(BarChartQuery query);
+    }
+
+    private static void time(BarChartDataset data, String name, ForkJoinPool single, ForkJoinPool all, Query query) {
+        Timing t1 = best(query.on(new BarChartQuery(data, single)));
+        Timing tn = best(query.on(new BarChartQuery(data, all)));
+        System.out.printf("%-24s %9.1f ms %9.1f ms  (%.1fx)  checksum %d%s%n", name, t1.millis, tn.millis,
+                t1.millis / tn.millis, tn.checksum, t1.checksum == tn.checksum ? "" : " MISMATCH " + t1.checksum);
+    }
+
+    // The fastest time of several runs, and the sum of the values in the result
+    private static class Timing {
+        double millis;
+        long checksum;
+    }
+
+    // Times several runs after warming up.  Each result is summed outside the timed part,
+    // so the work can't be optimized away and the two pools' results can be compared.
+    private static Timing best(Supplier<BarChartDataset> run) {
+        Timing timing = new Timing();
+        for (int i = 0; i < WARMUP; i++) timing.checksum = checksum(run.get());
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            BarChartDataset result = run.get();
+            best = Math.min(best, System.nanoTime() - start);
+            timing.checksum = checksum(result);
+        }
+        timing.millis = best / 1e6;
+        return timing;
+    }
+
+    private static long checksum(BarChartDataset result) {
+        long sum = 0;
+        for (int row = 0; row < result.getRecordCount(); row++) sum += result.getValue(row);
+        return sum;
+    }
+
+    // Frames of random records, each name with a fixed country and category
+    private static BarChartDataset synthetic(int frames, int perFrame, Random random) {
+        String[] names = new String[NAMES];
+        String[] countries = new String[NAMES];
+        String[] categories = new String[NAMES];
+        for (int i = 0; i < NAMES; i++) {
+            names[i] = "Name " + i;
+            countries[i] = "Country " + random.nextInt(COUNTRIES);
+            categories[i] = "Category " + random.nextInt(CATEGORIES);
+        }
+        BarChartDataset.Builder b = new BarChartDataset.Builder("Synthetic", "Value", "Random");
+        for (int f = 0; f < frames; f++) {
+            b.frame(String.valueOf(1000 + f));
+            for (int r = 0; r < perFrame; r++) {
+                int i = random.nextInt(NAMES);
+                b.add(names[i], countries[i], 1 + random.nextInt(1_000_000), categories[i]);
+            }
+        }
+        return b.build();
+    }
+}
@@ -0,0 +1,204 @@
+package bchart.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A whole bar chart data file held in columns.  Names, countries, categories and dates are
+ * dictionary-encoded: each column stores int ids into its own {@link StringDictionary}, so
+ * ids are dense (0 to the number of distinct values) and every distinct string is kept
+ * once.  Values are a plain int array.  The records of frame f are the rows from
+ * getFrameStart(f) up to getFrameEnd(f).
+ *
+ * All of the accessors work on indices and return ints or shared Strings, so reading a
+ * dataset allocates nothing.  A dataset never changes once built and may be shared
+ * between threads.
+ */
+public class BarChartDataset {
+
+    private final String title;
+    private final String xAxisLabel;
+    private final String source;
+
+    private final StringDictionary dates;
+    private final StringDictionary names;
+    private final StringDictionary countries;
+    private final StringDictionary categories;
+
+    private final int[] frameStart;   // frameStart[f] is the first row of frame f, plus a final end
+    private final int[] frameDate;    // the date id of each frame
+    private final int[] nameIds;
+    private final int[] countryIds;
+    private final int[] values;
+    private final int[] categoryIds;
+
+    private BarChartDataset(Builder b) {
+        this.title = b.title;
+        this.xAxisLabel = b.xAxisLabel;
+        this.source = b.source;
+        this.dates = b.dates;
+        this.names = b.names;
+        this.countries = b.countries;
+        this.categories = b.categories;
+        this.frameStart = Arrays.copyOf(b.frameStart, b.frames + 1);
+        this.frameStart[b.frames] = b.rows;
+        this.frameDate = Arrays.copyOf(b.frameDate, b.frames);
+        this.nameIds = Arrays.copyOf(b.nameIds, b.rows);
+        this.countryIds = Arrays.copyOf(b.countryIds, b.rows);
+        this.values = Arrays.copyOf(b.values, b.rows);
+        this.categoryIds = Arrays.copyOf(b.categoryIds, b.rows);
+    }
+
+    /**
+     * Reads a whole data file.
+     *
+     * @param file the file
+     * @return the dataset
+     * @throws IOException if the file can't be read or is malformed
+     */
+    public static BarChartDataset load(Path file) throws IOException {
+        try (BarChartFileReader reader = new BarChartFileReader(file)) {
+            Builder b = new Builder(reader.getTitle(), reader.getXAxisLabel(), reader.getSource());
+            reader.read(b.dates, b.names, b.countries, b.categories, new BarChartFileReader.RecordSink() {
+                @Override
+                public void frame(int dateId, int count) { b.frame(dateId, count); }
+
+                @Override
+                public void record(int nameId, int countryId, int value, int categoryId) {
+                    b.record(nameId, countryId, value, categoryId);
+                }
+            });
+            return b.build();
+        }
+    }
+
+    public String getTitle() { return title; }
+    public String getXAxisLabel() { return xAxisLabel; }
+    public String getSource() { return source; }
+
+    public int getFrameCount() { return frameDate.length; }
+    public int getRecordCount() { return values.length; }
+
+    /** @return the first row of frame f */
+    public int getFrameStart(int f) { return frameStart[f]; }
+
+    /** @return the row after the last row of frame f */
+    public int getFrameEnd(int f) { return frameStart[f + 1]; }
+
+    public int getFrameSize(int f) { return frameStart[f + 1] - frameStart[f]; }
+
+    public int getDateId(int f) { return frameDate[f]; }
+    public String getDate(int f) { return dates.get(frameDate[f]); }
+
+    public int getNameId(int row) { return nameIds[row]; }
+    public int getCountryId(int row) { return countryIds[row]; }
+    public int getCategoryId(int row) { return categoryIds[row]; }
+    public int getValue(int row) { return values[row]; }
+
+    // The value of every row, for ranking without copying; not to be modified
+    int[] values() { return values; }
+
+    public String getName(int row) { return names.get(nameIds[row]); }
+    public String getCountry(int row) { return countries.get(countryIds[row]); }
+    public String getCategory(int row) { return categories.get(categoryIds[row]); }
+
+    /** @return the dictionary of dates.  Don't add to it. */
+    public StringDictionary getDates() { return dates; }
+    /** @return the dictionary of names.  Don't add to it. */
+    public StringDictionary getNames() { return names; }
+    /** @return the dictionary of countries.  Don't add to it. */
+    public StringDictionary getCountries() { return countries; }
+    /** @return the dictionary of categories.  Don't add to it. */
+    public StringDictionary getCategories() { return categories; }
+
+    @Override
+    public String toString() {
+        return "BarChartDataset[" + title + ", " + getFrameCount() + " frames, " + getRecordCount() + " records]";
+    }
+
+    /**
+     * Builds a dataset a frame at a time.  Call frame to start each frame, then add its
+     * records.  The dataset shares the builder's dictionaries, so a builder must not be
+     * used after build.
+     */
+    public static class Builder {
+        private final String title, xAxisLabel, source;
+        private final StringDictionary dates = new StringDictionary();
+        private final StringDictionary names = new StringDictionary();
+        private final StringDictionary countries = new StringDictionary();
+        private final StringDictionary categories = new StringDictionary();
+
+        private int frames = 0, rows = 0;
+        private int[] frameStart = new int[64];
+        private int[] frameDate = new int[64];
+        private int[] nameIds = new int[1024];
+        private int[] countryIds = new int[1024];
+        private int[] values = new int[1024];
+        private int[] categoryIds = new int[1024];
+
+        public Builder(String title, String xAxisLabel, String source) {
+            this.title = title;
+            this.xAxisLabel = xAxisLabel;
+            this.source = source;
+        }
+
+        /**
+         * Starts a new frame.
+         *
+         * @param date the date of the frame
+         */
+        public Builder frame(String date) {
+            frame(dates.intern(date), 0);
+            return this;
+        }
+
+        /**
+         * Adds a record to the current frame.
+         */
+        public Builder add(String name, String country, int value, String category) {
+            if (frames == 0) throw new IllegalStateException("no frame has been started");
+            record(names.intern(name), countries.intern(country), value, categories.intern(category));
+            return this;
+        }
+
+        void frame(int dateId, int count) {
+            if (frames == frameDate.length) {
+                frameStart = Arrays.copyOf(frameStart, frames * 2);
+                frameDate = Arrays.copyOf(frameDate, frames * 2);
+            }
+            frameStart[frames] = rows;
+            frameDate[frames] = dateId;
+            frames++;
+            ensureRows(rows + count);
+        }
+
+        void record(int nameId, int countryId, int value, int categoryId) {
+            if (rows == values.length) ensureRows(rows + 1);
+            nameIds[rows] = nameId;
+            countryIds[rows] = countryId;
+            values[rows] = value;
+            categoryIds[rows] = categoryId;
+            rows++;
+        }
+
+        // The builder's dictionaries, for adding many records by id with frame and record
+        StringDictionary dates() { return dates; }
+        StringDictionary names() { return names; }
+        StringDictionary countries() { return countries; }
+        StringDictionary categories() { return categories; }
+
+        public BarChartDataset build() {
+            return new BarChartDataset(this);
+        }
+
+        private void ensureRows(int n) {
+            if (n <= values.length) return;
+            int capacity = Math.max(n, values.length * 2);
+            nameIds = Arrays.copyOf(nameIds, capacity);
+            countryIds = Arrays.copyOf(countryIds, capacity);
+            values = Arrays.copyOf(values, capacity);
+            categoryIds = Arrays.copyOf(categoryIds, capacity);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package bchart.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads a bar chart data file.  The file starts with three header lines (the title, the
+ * x-axis label and the data source) and a blank line.  Then come groups of records: a
+ * line with the number of records, followed by that many lines of the form
+ * {@code date,name,country,value,category}, and a blank line.  Text is UTF-8.
+ *
+ * The file is memory-mapped a window at a time and parsed directly from the mapped bytes,
+ * without splitting lines into intermediate strings.  Frames are parsed one at a time as
+ * the stream from {@link #frames()} is consumed, so a chart can start playing before a
+ * large file has been read, and files of any size can be streamed.
+ *
+ * A reader is not thread safe.  Close it when done; streams from a closed reader fail.
+ */
+public class BarChartFileReader implements Closeable {
+
+    private static final long MAP_WINDOW = 1L << 30;
+    private static final int HEADER_LINES = 3;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long window;
+    private final StringDictionary dictionary = new StringDictionary();
+    private final String title;
+    private final String xAxisLabel;
+    private final String source;
+    private final long dataStart;
+
+    /**
+     * Opens a data file and reads its header.
+     *
+     * @param file the file
+     * @throws IOException if the file can't be read or has no header
+     */
+    public BarChartFileReader(Path file) throws IOException {
+        this(file, MAP_WINDOW);
+    }
+
+    // Opens a file with the given mapping window size, so that remapping can be tested
+    BarChartFileReader(Path file, long window) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.window = window;
+        try {
+            Parser p = new Parser(0, 0, dictionary, dictionary, dictionary, dictionary);
+            title = p.headerLine("title");
+            xAxisLabel = p.headerLine("x-axis label");
+            source = p.headerLine("source");
+            dataStart = p.position();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public String getTitle() { return title; }
+    public String getXAxisLabel() { return xAxisLabel; }
+    public String getSource() { return source; }
+
+    /**
+     * @return the dictionary holding every string read so far
+     */
+    public StringDictionary getDictionary() { return dictionary; }
+
+    /**
+     * Returns the frames of the file, in order, as a lazy stream.  Each call starts again
+     * from the first frame.
+     *
+     * @return a sequential stream of frames
+     * @throws UncheckedIOException (from the stream) if the file can't be read or is malformed
+     */
+    public Stream<Frame> frames() {
+        return frames(dataStart);
+    }
+
+    /**
+     * Returns the frames of the file starting from a byte offset, such as one from a
+     * {@link FrameIndex}, as a lazy stream.  Nothing before the offset is read.
+     *
+     * @param offset the offset of a frame's count line, or of the blank line before it
+     * @return a sequential stream of frames
+     * @throws IllegalArgumentException if the offset is before the first frame or past the end of the file
+     * @throws UncheckedIOException (from the stream) if the file can't be read or is malformed
+     */
+    public Stream<Frame> frames(long offset) {
+        if (offset < dataStart || offset > size) throw new IllegalArgumentException("offset " + offset + " is outside the data");
+        long firstLine = offset == dataStart ? HEADER_LINES : -1;
+        Spliterator<Frame> split = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE) {
+            private final FrameBuilder frame = new FrameBuilder();
+            private Parser p;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Frame> action) {
+                try {
+                    if (p == null) p = new Parser(offset, firstLine, dictionary, dictionary, dictionary, dictionary);
+                    if (!p.nextGroup(frame)) return false;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                action.accept(frame.build());
+                return true;
+            }
+        };
+        return StreamSupport.stream(split, false);
+    }
+
+    /**
+     * Reads every frame into a sink, interning each column's strings into its own dictionary.
+     */
+    void read(StringDictionary dates, StringDictionary names, StringDictionary countries,
+               StringDictionary categories, RecordSink sink) throws IOException {
+        Parser p = new Parser(dataStart, HEADER_LINES, dates, names, countries, categories);
+        while (p.nextGroup(sink)) { }
+    }
+
+    /**
+     * Finds every frame in a single pass, recording its offset and the key of its date,
+     * without reading the rest of its records.
+     */
+    void scan(FrameIndex.Builder index) throws IOException {
+        Parser p = new Parser(dataStart, HEADER_LINES, null, null, null, null);
+        while (p.skipGroup(index)) { }
+    }
+
+    /**
+     * @return the size of the file in bytes
+     */
+    long size() { return size; }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Receives parsed records as dictionary ids.  frame is called at the start of each
+     * group, then record once for each of its records.
+     */
+    interface RecordSink {
+        void frame(int dateId, int count);
+        void record(int nameId, int countryId, int value, int categoryId);
+    }
+
+    /**
+     * Collects one group of records into a Frame.
+     */
+    private class FrameBuilder implements RecordSink {
+        private String date;
+        private String[] names, countries, categories;
+        private int[] values;
+        private int n;
+
+        @Override
+        public void frame(int dateId, int count) {
+            date = dictionary.get(dateId);
+            names = new String[count];
+            countries = new String[count];
+            categories = new String[count];
+            values = new int[count];
+            n = 0;
+        }
+
+        @Override
+        public void record(int nameId, int countryId, int value, int categoryId) {
+            names[n] = dictionary.get(nameId);
+            countries[n] = dictionary.get(countryId);
+            values[n] = value;
+            categories[n] = dictionary.get(categoryId);
+            n++;
+        }
+
+        Frame build() {
+            return new Frame(date, names, countries, values, categories);
+        }
+    }
+
+    /**
+     * Parses lines from a sliding memory-mapped window.  The window is remapped to start
+     * at the current line whenever the line doesn't end inside it.
+     */
+    private class Parser {
+        private MappedByteBuffer buf;
+        private long windowStart;
+        private int pos;                  // the start of the next line, within the window
+        private int lineStart, lineEnd;   // the current line, without its line terminator
+        private long lineNumber;          // or -1 if the parser started part way through the file
+        private final StringDictionary dates, names, countries, categories;
+
+        Parser(long start, long lineNumber, StringDictionary dates, StringDictionary names,
+                StringDictionary countries, StringDictionary categories) throws IOException {
+            this.lineNumber = lineNumber;
+            this.dates = dates;
+            this.names = names;
+            this.countries = countries;
+            this.categories = categories;
+            map(start);
+        }
+
+        long position() { return windowStart + pos; }
+
+        /**
+         * Reads the next line.
+         *
+         * @return false at the end of the file
+         */
+        boolean nextLine() throws IOException {
+            if (lineNumber >= 0) lineNumber++;
+            while (true) {
+                int limit = buf.limit();
+                boolean atEnd = windowStart + limit >= size;
+                if (pos == limit && atEnd) return false;
+                int i = pos;
+                while (i < limit && buf.get(i) != '\n') i++;
+                if (i < limit || atEnd) {
+                    lineStart = pos;
+                    lineEnd = (i > pos && buf.get(i - 1) == '\r') ? i - 1 : i;
+                    pos = Math.min(i + 1, limit);
+                    return true;
+                }
+                if (pos == 0) throw error("line is longer than the mapping window");
+                map(windowStart + pos);
+            }
+        }
+
+        String headerLine(String what) throws IOException {
+            if (!nextLine()) throw error("missing " + what);
+            return StandardCharsets.UTF_8.decode(buf.slice(lineStart, lineEnd - lineStart)).toString();
+        }
+
+        /**
+         * Parses the next group of records, passing the frame and then each record to a sink.
+         *
+         * @return false at the end of the file
+         */
+        boolean nextGroup(RecordSink sink) throws IOException {
+            do {
+                if (!nextLine()) return false;
+            } while (lineStart == lineEnd);
+
+            int n = parseInt(lineStart, lineEnd);
+            if (n < 0) throw error("bad record count");
+            if (n == 0) sink.frame(dates.intern(""), 0);
+
+            for (int k = 0; k < n; k++) {
+                if (!nextLine()) throw error("expected " + n + " records but found " + k);
+                int c1 = comma(lineStart);
+                int c2 = comma(c1 + 1);
+                int c3 = comma(c2 + 1);
+                int c4 = comma(c3 + 1);
+                if (k == 0) sink.frame(dates.intern(buf, lineStart, c1), n);
+                sink.record(names.intern(buf, c1 + 1, c2), countries.intern(buf, c2 + 1, c3),
+                        parseInt(c3 + 1, c4), categories.intern(buf, c4 + 1, lineEnd));
+            }
+            return true;
+        }
+
+        /**
+         * Skips the next group of records, recording where it starts and its date key.
+         *
+         * @return false at the end of the file
+         */
+        boolean skipGroup(FrameIndex.Builder index) throws IOException {
+            do {
+                if (!nextLine()) return false;
+            } while (lineStart == lineEnd);
+
+            long offset = windowStart + lineStart;
+            int n = parseInt(lineStart, lineEnd);
+            if (n < 0) throw error("bad record count");
+            long key = index.lastKey();
+            for (int k = 0; k < n; k++) {
+                if (!nextLine()) throw error("expected " + n + " records but found " + k);
+                if (k == 0) key = FrameIndex.key(buf, lineStart, comma(lineStart));
+            }
+            index.add(offset, key);
+            return true;
+        }
+
+        private int comma(int from) throws IOException {
+            for (int i = from; i < lineEnd; i++) {
+                if (buf.get(i) == ',') return i;
+            }
+            throw error("expected 5 comma-separated fields");
+        }
+
+        private int parseInt(int from, int to) throws IOException {
+            boolean negative = from < to && buf.get(from) == '-';
+            int i = negative ? from + 1 : from;
+            if (i == to) throw error("expected a number");
+            long v = 0;
+            for (; i < to; i++) {
+                int d = buf.get(i) - '0';
+                if (d < 0 || d > 9) throw error("expected a number");
+                v = v * 10 + d;
+                if (v > Integer.MAX_VALUE) throw error("number is too large");
+            }
+            return (int)(negative ? -v : v);
+        }
+
+        private IOException error(String message) {
+            if (lineNumber < 0) return new IOException("near byte " + (windowStart + lineStart) + ": " + message);
+            return new IOException("line " + Math.max(1, lineNumber) + ": " + message);
+        }
+
+        private void map(long start) throws IOException {
+            windowStart = start;
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(window, size - start));
+            pos = 0;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package bchart.model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Group-by aggregations over every frame of a dataset: the total value of each category
+ * or country, each one's share of the frame's total, and how many of a frame's top K
+ * records each one has.  Frames are aggregated in parallel on a fork-join pool, each
+ * into its own slice of one result array, so no locking or merging is needed.
+ *
+ * Each query returns a new dataset with one record per group per frame, named after the
+ * group and with the group as its category (so each group keeps its color), which can be
+ * ranked and shown like any other.  Groups that add up to zero in a frame are left out of
+ * it.
+ */
+public class BarChartQuery {
+
+    /**
+     * A column to group records by.
+     */
+    public enum GroupBy {
+        CATEGORY("category"),
+        COUNTRY("country");
+
+        private final String label;
+
+        GroupBy(String label) { this.label = label; }
+
+        StringDictionary groups(BarChartDataset data) {
+            return this == CATEGORY ? data.getCategories() : data.getCountries();
+        }
+
+        int group(BarChartDataset data, int row) {
+            return this == CATEGORY ? data.getCategoryId(row) : data.getCountryId(row);
+        }
+    }
+
+    private final BarChartDataset data;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates queries over a dataset, run on the common fork-join pool.
+     */
+    public BarChartQuery(BarChartDataset data) {
+        this(data, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates queries over a dataset, run on the given pool.
+     */
+    public BarChartQuery(BarChartDataset data, ForkJoinPool pool) {
+        this.data = data;
+        this.pool = pool;
+    }
+
+    /**
+     * Adds up the values of each group in each frame.
+     *
+     * @param by the column to group by
+     * @return a dataset of the totals
+     * @throws ArithmeticException if a total doesn't fit in an int
+     */
+    public BarChartDataset totals(GroupBy by) {
+        int groups = by.groups(data).size();
+        long[] sums = new long[Math.multiplyExact(data.getFrameCount(), groups)];
+        run(f -> {
+            int base = f * groups;
+            for (int row = data.getFrameStart(f); row < data.getFrameEnd(f); row++) {
+                sums[base + by.group(data, row)] += data.getValue(row);
+            }
+        });
+        return build(data.getTitle() + " (total by " + by.label + ")", by, sums);
+    }
+
+    /**
+     * Computes each group's share of the total value of each frame.  A share is scaled
+     * and rounded to an int, so a scale of 100 gives percentages and 1000 gives tenths
+     * of a percent.
+     *
+     * @param by the column to group by
+     * @param scale the value of a whole frame
+     * @return a dataset of the shares
+     * @throws IllegalArgumentException if scale is not positive
+     */
+    public BarChartDataset shares(GroupBy by, int scale) {
+        if (scale <= 0) throw new IllegalArgumentException("scale must be positive");
+        int groups = by.groups(data).size();
+        long[] sums = new long[Math.multiplyExact(data.getFrameCount(), groups)];
+        run(f -> {
+            int base = f * groups;
+            long total = 0;
+            for (int row = data.getFrameStart(f); row < data.getFrameEnd(f); row++) {
+                sums[base + by.group(data, row)] += data.getValue(row);
+                total += data.getValue(row);
+            }
+            for (int g = 0; g < groups; g++) {
+                sums[base + g] = total == 0 ? 0 : Math.round((double) sums[base + g] * scale / total);
+            }
+        });
+        String unit = scale == 100 ? "%" : "per " + scale;
+        return build(data.getTitle() + " (share by " + by.label + ")", by, sums,
+                "Share of " + data.getXAxisLabel() + " (" + unit + ")");
+    }
+
+    /**
+     * Counts how many of the top K records of each frame belong to each group.
+     *
+     * @param by the column to group by
+     * @param k the number of records ranked per frame, such as 10
+     * @return a dataset of the counts
+     * @throws IllegalArgumentException if k is not positive
+     */
+    public BarChartDataset topCounts(GroupBy by, int k) {
+        FrameRanking ranking = FrameRanking.compute(data, k, pool);
+        int groups = by.groups(data).size();
+        long[] counts = new long[Math.multiplyExact(data.getFrameCount(), groups)];
+        run(f -> {
+            int base = f * groups;
+            for (int rank = 0; rank < ranking.getCount(f); rank++) {
+                counts[base + by.group(data, ranking.getRow(f, rank))]++;
+            }
+        });
+        return build(data.getTitle() + " (top " + k + " records by " + by.label + ")", by, counts,
+                "records in the top " + k);
+    }
+
+    private interface FrameTask {
+        void run(int f);
+    }
+
+    // Runs a task for every frame; the parallel stream hands ranges of frames to each worker
+    private void run(FrameTask task) {
+        pool.submit(() -> IntStream.range(0, data.getFrameCount()).parallel().forEach(task::run)).join();
+    }
+
+    private BarChartDataset build(String title, GroupBy by, long[] values) {
+        return build(title, by, values, data.getXAxisLabel());
+    }
+
+    // Builds a dataset from frames x groups values, in group id order within each frame.
+    // Each group's strings are interned once, and records are added by id.
+    private BarChartDataset build(String title, GroupBy by, long[] values, String xAxisLabel) {
+        StringDictionary groups = by.groups(data);
+        int n = groups.size();
+        BarChartDataset.Builder b = new BarChartDataset.Builder(title, xAxisLabel, data.getSource());
+        int[] nameIds = new int[n], countryIds = new int[n], categoryIds = new int[n];
+        int none = by == GroupBy.COUNTRY ? -1 : b.countries().intern("");
+        for (int g = 0; g < n; g++) {
+            String group = groups.get(g);
+            nameIds[g] = b.names().intern(group);
+            countryIds[g] = by == GroupBy.COUNTRY ? b.countries().intern(group) : none;
+            categoryIds[g] = b.categories().intern(group);
+        }
+
+        for (int f = 0; f < data.getFrameCount(); f++) {
+            int base = f * n;
+            int count = 0;
+            for (int g = 0; g < n; g++) {
+                if (values[base + g] != 0) count++;
+            }
+            b.frame(b.dates().intern(data.getDate(f)), count);
+            for (int g = 0; g < n; g++) {
+                long value = values[base + g];
+                if (value != 0) b.record(nameIds[g], countryIds[g], Math.toIntExact(value), categoryIds[g]);
+            }
+        }
+        return b.build();
+    }
+}
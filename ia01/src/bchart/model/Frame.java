@@ -0,0 +1,70 @@
+package bchart.model;
+
+/**
+ * One group of records from a bar chart data file: every record for a single date.
+ * Strings are shared through the reader's {@link StringDictionary}, so frames from the
+ * same file never hold duplicate copies of a name, country or category.
+ */
+public class Frame {
+
+    private final String date;
+    private final String[] names;
+    private final String[] countries;
+    private final int[] values;
+    private final String[] categories;
+
+    Frame(String date, String[] names, String[] countries, int[] values, String[] categories) {
+        this.date = date;
+        this.names = names;
+        this.countries = countries;
+        this.values = values;
+        this.categories = categories;
+    }
+
+    /**
+     * @return the date of the first record in this frame
+     */
+    public String getDate() { return date; }
+
+    /**
+     * @return the number of records
+     */
+    public int size() { return values.length; }
+
+    public String getName(int i) { return names[i]; }
+    public String getCountry(int i) { return countries[i]; }
+    public int getValue(int i) { return values[i]; }
+    public String getCategory(int i) { return categories[i]; }
+
+    /**
+     * Returns the records with the k largest values, largest first.  Records with equal
+     * values keep their order.
+     *
+     * @param k the number of records to keep
+     * @return this frame if it is already no larger than k and sorted, or a new frame
+     * @throws IllegalArgumentException if k is negative
+     */
+    public Frame top(int k) {
+        if (k < 0) throw new IllegalArgumentException("k must not be negative");
+        int[] best = new int[Math.min(k, values.length)];
+        int n = FrameRanking.top(values, 0, values.length, k, best, 0);
+
+        boolean same = n == values.length;
+        for (int j = 0; j < n && same; j++) same = best[j] == j;
+        if (same) return this;
+        String[] topNames = new String[n], topCountries = new String[n], topCategories = new String[n];
+        int[] topValues = new int[n];
+        for (int j = 0; j < n; j++) {
+            topNames[j] = names[best[j]];
+            topCountries[j] = countries[best[j]];
+            topValues[j] = values[best[j]];
+            topCategories[j] = categories[best[j]];
+        }
+        return new Frame(date, topNames, topCountries, topValues, topCategories);
+    }
+
+    @Override
+    public String toString() {
+        return "Frame[" + date + ", " + values.length + " records]";
+    }
+}
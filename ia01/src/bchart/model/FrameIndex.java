@@ -0,0 +1,243 @@
+package bchart.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The byte offset and date key of every frame in a bar chart data file, so that playback
+ * can start at any date without parsing the frames before it.  An index is built in one
+ * pass over the file, and is saved next to it (as {@code <file>.idx}) to be reused.
+ *
+ * A date key is the number made of the digits in the date, so "1900" is 1900 and
+ * "2000-01-01" is 20000101.  Within a file dates have the same format and appear in
+ * increasing order, so frames can be found by date with a binary search.
+ *
+ * Index file layout: the magic number, a version, the size and modification time of the
+ * data file (to detect a stale index), the number of frames, and then an offset and a key
+ * for each frame.
+ */
+public class FrameIndex {
+
+    private static final int MAGIC = 0x42434958;   // "BCIX"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 2 + 8 + 8 + 4;
+    private static final String SUFFIX = ".idx";
+
+    private final long dataSize;
+    private final long dataModified;
+    private final long[] offsets;
+    private final long[] keys;
+
+    private FrameIndex(long dataSize, long dataModified, long[] offsets, long[] keys) {
+        this.dataSize = dataSize;
+        this.dataModified = dataModified;
+        this.offsets = offsets;
+        this.keys = keys;
+    }
+
+    /**
+     * Returns the index of a data file, loading it from the file's sidecar index if that is
+     * up to date.  Otherwise the index is built and saved, so the next call is fast.  If
+     * the sidecar can't be written, the index is still returned.
+     *
+     * @param dataFile the data file
+     * @return the index
+     * @throws IOException if the data file can't be read or is malformed
+     */
+    public static FrameIndex forFile(Path dataFile) throws IOException {
+        Path indexFile = sidecar(dataFile);
+        long size = Files.size(dataFile);
+        long modified = Files.getLastModifiedTime(dataFile).toMillis();
+        if (Files.isRegularFile(indexFile)) {
+            try {
+                FrameIndex index = load(indexFile);
+                if (index.dataSize == size && index.dataModified == modified) return index;
+            } catch (IOException e) {
+                // A corrupt or old index is simply rebuilt
+            }
+        }
+
+        FrameIndex index;
+        try (BarChartFileReader reader = new BarChartFileReader(dataFile)) {
+            index = build(reader, modified);
+        }
+        try {
+            index.save(indexFile);
+        } catch (IOException e) {
+            // The index works without being saved; it will be built again next time
+        }
+        return index;
+    }
+
+    /**
+     * Builds the index of an open file in a single pass.
+     *
+     * @param reader the file
+     * @param dataModified the file's modification time, in milliseconds, to store in the index
+     * @return the index
+     * @throws IOException if the file can't be read or is malformed
+     */
+    public static FrameIndex build(BarChartFileReader reader, long dataModified) throws IOException {
+        Builder b = new Builder();
+        reader.scan(b);
+        return new FrameIndex(reader.size(), dataModified, Arrays.copyOf(b.offsets, b.size), Arrays.copyOf(b.keys, b.size));
+    }
+
+    /**
+     * Reads a saved index.
+     *
+     * @param indexFile the index file
+     * @return the index
+     * @throws IOException if the file can't be read or is not an index
+     */
+    public static FrameIndex load(Path indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE) throw new IOException("not a frame index: " + indexFile);
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (buf.getInt() != MAGIC) throw new IOException("not a frame index: " + indexFile);
+            short version = buf.getShort();
+            if (version != VERSION) throw new IOException("unsupported frame index version " + version);
+            long dataSize = buf.getLong();
+            long dataModified = buf.getLong();
+            int n = buf.getInt();
+            if (n < 0 || length != HEADER_SIZE + 16L * n) throw new IOException("corrupt frame index: " + indexFile);
+            long[] offsets = new long[n];
+            long[] keys = new long[n];
+            buf.asLongBuffer().get(offsets);
+            buf.position(buf.position() + 8 * n);
+            buf.asLongBuffer().get(keys);
+            return new FrameIndex(dataSize, dataModified, offsets, keys);
+        }
+    }
+
+    /**
+     * Writes this index to a file.
+     *
+     * @param indexFile the file to create or replace
+     * @throws IOException if the file can't be written
+     */
+    public void save(Path indexFile) throws IOException {
+        int n = offsets.length;
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + 16 * n);
+        buf.putInt(MAGIC).putShort(VERSION).putLong(dataSize).putLong(dataModified).putInt(n);
+        buf.asLongBuffer().put(offsets);
+        buf.position(buf.position() + 8 * n);
+        buf.asLongBuffer().put(keys);
+        buf.rewind();
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) channel.write(buf);
+        }
+    }
+
+    /**
+     * @param dataFile a data file
+     * @return where the data file's index is saved
+     */
+    public static Path sidecar(Path dataFile) {
+        return dataFile.resolveSibling(dataFile.getFileName() + SUFFIX);
+    }
+
+    /** @return the number of frames */
+    public int size() { return offsets.length; }
+
+    /** @return the byte offset of frame f in the data file */
+    public long getOffset(int f) { return offsets[f]; }
+
+    /** @return the date key of frame f */
+    public long getKey(int f) { return keys[f]; }
+
+    /**
+     * Finds the frame to show for a date: the last frame whose date is not after it, or
+     * frame 0 if the date is before every frame.
+     *
+     * @param date a date in the same format as the file's
+     * @return the frame number, or -1 if the index is empty
+     */
+    public int find(String date) {
+        return findKey(key(date));
+    }
+
+    /**
+     * Finds the last frame whose key is not greater than the given key, or frame 0 if every
+     * frame's key is greater.
+     *
+     * @param key a date key
+     * @return the frame number, or -1 if the index is empty
+     */
+    public int findKey(long key) {
+        int lo = 0, hi = keys.length - 1, found = keys.length == 0 ? -1 : 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] <= key) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param date a date
+     * @return the number made of the date's digits (up to 18 of them)
+     */
+    public static long key(CharSequence date) {
+        long key = 0;
+        int digits = 0;
+        for (int i = 0; i < date.length() && digits < 18; i++) {
+            char c = date.charAt(i);
+            if (c >= '0' && c <= '9') {
+                key = key * 10 + (c - '0');
+                digits++;
+            }
+        }
+        return key;
+    }
+
+    // The key of the date in buf[from, to), read directly from its bytes
+    static long key(ByteBuffer buf, int from, int to) {
+        long key = 0;
+        int digits = 0;
+        for (int i = from; i < to && digits < 18; i++) {
+            int c = buf.get(i);
+            if (c >= '0' && c <= '9') {
+                key = key * 10 + (c - '0');
+                digits++;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Collects frame offsets and keys during a scan.
+     */
+    static class Builder {
+        private long[] offsets = new long[256];
+        private long[] keys = new long[256];
+        private int size = 0;
+
+        void add(long offset, long key) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            offsets[size] = offset;
+            keys[size] = key;
+            size++;
+        }
+
+        // The key of the previous frame, for a frame with no records
+        long lastKey() {
+            return size == 0 ? 0 : keys[size - 1];
+        }
+    }
+}
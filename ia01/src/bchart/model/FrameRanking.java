@@ -0,0 +1,141 @@
+package bchart.model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * The top K records of every frame of a dataset, by value, largest first.  Rankings are
+ * computed ahead of playback, a frame per task on a fork-join pool, so that showing a
+ * frame only means reading its K rows.
+ *
+ * Each frame is ranked with a bounded min-heap of size K, which takes O(n log K) for a
+ * frame of n records rather than sorting all of them.  The heap is built directly in the
+ * frame's slice of the result array, so ranking allocates nothing per frame.  Records
+ * with equal values keep the order they have in the file.
+ */
+public class FrameRanking {
+
+    private final BarChartDataset data;
+    private final int k;
+    private final int[] rows;     // rows[f * k + i] is the row of rank i in frame f
+    private final int[] counts;   // the number of ranked rows in each frame, at most k
+
+    private FrameRanking(BarChartDataset data, int k) {
+        this.data = data;
+        this.k = k;
+        this.rows = new int[Math.multiplyExact(data.getFrameCount(), k)];
+        this.counts = new int[data.getFrameCount()];
+    }
+
+    /**
+     * Ranks every frame of a dataset using the common fork-join pool.
+     *
+     * @param data the dataset
+     * @param k the number of records to keep per frame
+     * @return the rankings
+     */
+    public static FrameRanking compute(BarChartDataset data, int k) {
+        return compute(data, k, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Ranks every frame of a dataset in parallel on the given pool.
+     *
+     * @param data the dataset
+     * @param k the number of records to keep per frame, must be positive
+     * @param pool the pool to run on
+     * @return the rankings
+     * @throws IllegalArgumentException if k is not positive
+     */
+    public static FrameRanking compute(BarChartDataset data, int k, ForkJoinPool pool) {
+        if (k <= 0) throw new IllegalArgumentException("k must be positive");
+        FrameRanking ranking = new FrameRanking(data, k);
+        pool.submit(() -> IntStream.range(0, data.getFrameCount()).parallel().forEach(ranking::rankFrame)).join();
+        return ranking;
+    }
+
+    public BarChartDataset getDataset() { return data; }
+
+    /** @return the largest number of records ranked in a frame */
+    public int getK() { return k; }
+
+    public int getFrameCount() { return counts.length; }
+
+    /** @return the number of ranked records in frame f, which is less than K for small frames */
+    public int getCount(int f) { return counts[f]; }
+
+    /**
+     * @param f the frame
+     * @param rank the rank, from 0 (the largest value) to getCount(f) - 1
+     * @return the dataset row of the record with that rank
+     */
+    public int getRow(int f, int rank) {
+        if (rank < 0 || rank >= counts[f]) throw new IndexOutOfBoundsException("rank " + rank + " of " + counts[f]);
+        return rows[f * k + rank];
+    }
+
+    private void rankFrame(int f) {
+        counts[f] = top(data.values(), data.getFrameStart(f), data.getFrameEnd(f), k, rows, f * k);
+    }
+
+    /**
+     * Finds the indexes of the k largest values in values[from, to), largest first, with a
+     * bounded min-heap built in out[outFrom, outFrom + k).  Equal values keep their order.
+     *
+     * @return the number of indexes written, the smaller of k and to - from
+     */
+    static int top(int[] values, int from, int to, int k, int[] out, int outFrom) {
+        if (k <= 0) return 0;
+        int size = 0;
+
+        // A min-heap of the best indexes so far, with the weakest at the root
+        for (int i = from; i < to; i++) {
+            if (size < k) {
+                out[outFrom + size] = i;
+                siftUp(values, out, outFrom, size);
+                size++;
+            } else if (better(values, i, out[outFrom])) {
+                out[outFrom] = i;
+                siftDown(values, out, outFrom, 0, size);
+            }
+        }
+
+        // Heap sort in place: moving the weakest to the back leaves the best at the front
+        for (int n = size - 1; n > 0; n--) {
+            int weakest = out[outFrom];
+            out[outFrom] = out[outFrom + n];
+            out[outFrom + n] = weakest;
+            siftDown(values, out, outFrom, 0, n);
+        }
+        return size;
+    }
+
+    // True if index a ranks above index b: a larger value, or an equal value earlier on
+    private static boolean better(int[] values, int a, int b) {
+        return values[a] > values[b] || (values[a] == values[b] && a < b);
+    }
+
+    private static void siftUp(int[] values, int[] heap, int base, int i) {
+        int index = heap[base + i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(values, heap[base + parent], index)) break;
+            heap[base + i] = heap[base + parent];
+            i = parent;
+        }
+        heap[base + i] = index;
+    }
+
+    private static void siftDown(int[] values, int[] heap, int base, int i, int size) {
+        int index = heap[base + i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && better(values, heap[base + child], heap[base + child + 1])) child++;
+            if (!better(values, index, heap[base + child])) break;
+            heap[base + i] = heap[base + child];
+            i = child;
+        }
+        heap[base + i] = index;
+    }
+}
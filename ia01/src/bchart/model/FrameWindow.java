@@ -0,0 +1,206 @@
+package bchart.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * A window of decoded frames around a playhead, for playing files that are too large to
+ * load.  A background thread decodes frames in order ahead of the playhead, seeking with
+ * a {@link FrameIndex}, and keeps only the top K records of each.  Frames more than a set
+ * distance behind the playhead are dropped as their slots are reused, so the memory held
+ * depends on the size of the window and not on the size of the file.  (Strings are
+ * interned by the reader, so distinct names, countries and categories are still kept
+ * once each.)
+ *
+ * Moving the playhead to a frame inside the window, or just past its end, keeps the
+ * frames already decoded; moving it anywhere else starts decoding again from there.
+ * The frames are read from a memory-mapped file, so seeking costs the same wherever the
+ * frame is.
+ */
+public class FrameWindow implements Closeable {
+
+    private final BarChartFileReader reader;
+    private final FrameIndex index;
+    private final int k;
+    private final int ahead;
+    private final Thread prefetcher;
+
+    // Guarded by this: frames start to end - 1 are decoded, each in ring[f % ring.length].
+    // A seek increments generation, so a frame decoded before it is thrown away.
+    private final Frame[] ring;
+    private int playhead = 0;
+    private int start = 0;
+    private int end = 0;
+    private int generation = 0;
+    private boolean closed = false;
+    private RuntimeException failure;
+
+    /**
+     * Opens a data file for windowed playback, with its index from {@link FrameIndex#forFile}.
+     *
+     * @param file   the data file
+     * @param k      the number of records to keep per frame
+     * @param ahead  the number of frames to decode ahead of the playhead
+     * @param behind the number of frames to keep behind the playhead
+     * @throws IOException if the file can't be read
+     * @throws IllegalArgumentException if k or ahead is not positive, or behind is negative
+     */
+    public FrameWindow(Path file, int k, int ahead, int behind) throws IOException {
+        this(indexFor(file, k, ahead, behind), file, k, ahead, behind);
+    }
+
+    // Opens the file once its index is built and the arguments are checked
+    private FrameWindow(FrameIndex index, Path file, int k, int ahead, int behind) throws IOException {
+        this(new BarChartFileReader(file), index, k, ahead, behind);
+    }
+
+    /**
+     * @param reader the file, which the window closes when it is closed
+     * @param index  the file's index
+     * @param k      the number of records to keep per frame
+     * @param ahead  the number of frames to decode ahead of the playhead
+     * @param behind the number of frames to keep behind the playhead
+     * @throws IllegalArgumentException if k or ahead is not positive, or behind is negative
+     */
+    public FrameWindow(BarChartFileReader reader, FrameIndex index, int k, int ahead, int behind) {
+        checkArguments(k, ahead, behind);
+        this.reader = reader;
+        this.index = index;
+        this.k = k;
+        this.ahead = ahead;
+        this.ring = new Frame[ahead + behind + 1];
+        this.prefetcher = new Thread(this::prefetch, "frame-prefetcher");
+        this.prefetcher.setDaemon(true);
+        this.prefetcher.start();
+    }
+
+    public BarChartFileReader getReader() { return reader; }
+
+    /** @return the number of frames in the file */
+    public int getFrameCount() { return index.size(); }
+
+    /**
+     * Finds the frame to show for a date.
+     *
+     * @see FrameIndex#find
+     */
+    public int find(String date) { return index.find(date); }
+
+    /**
+     * Moves the playhead to a frame and returns it if it has been decoded.  This never
+     * waits, so it may be called from the event dispatch thread.
+     *
+     * @param f the frame
+     * @return the frame, with at most K records, largest first; or null if it isn't ready yet
+     * @throws IndexOutOfBoundsException if there is no such frame
+     * @throws IllegalStateException if decoding failed
+     */
+    public synchronized Frame poll(int f) {
+        moveTo(f);
+        return f < end ? ring[f % ring.length] : null;
+    }
+
+    /**
+     * Moves the playhead to a frame and waits until it has been decoded.
+     *
+     * @param f the frame
+     * @return the frame, with at most K records, largest first
+     * @throws IndexOutOfBoundsException if there is no such frame
+     * @throws IllegalStateException if decoding failed or the window is closed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized Frame get(int f) throws InterruptedException {
+        moveTo(f);
+        while (f >= end) {
+            if (closed) throw new IllegalStateException("window is closed");
+            wait();
+            if (failure != null) throw new IllegalStateException("reading frames failed", failure);
+        }
+        return ring[f % ring.length];
+    }
+
+    /**
+     * Stops decoding and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            Arrays.fill(ring, null);
+            notifyAll();
+        }
+        try {
+            prefetcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        reader.close();
+    }
+
+    // Everything that can fail before the reader is opened, so that nothing leaves it open
+    private static FrameIndex indexFor(Path file, int k, int ahead, int behind) throws IOException {
+        checkArguments(k, ahead, behind);
+        return FrameIndex.forFile(file);
+    }
+
+    private static void checkArguments(int k, int ahead, int behind) {
+        if (k <= 0 || ahead <= 0) throw new IllegalArgumentException("k and ahead must be positive");
+        if (behind < 0) throw new IllegalArgumentException("behind must not be negative");
+    }
+
+    private void moveTo(int f) {
+        if (f < 0 || f >= index.size()) throw new IndexOutOfBoundsException("frame " + f + " of " + index.size());
+        if (failure != null) throw new IllegalStateException("reading frames failed", failure);
+        if (f < start || f > end) {
+            generation++;
+            Arrays.fill(ring, null);
+            start = end = f;
+        }
+        playhead = f;
+        notifyAll();
+    }
+
+    // Runs on the prefetch thread: decodes the frame after the window while it is less
+    // than `ahead` frames past the playhead, reading sequentially until the next seek
+    private void prefetch() {
+        Iterator<Frame> frames = null;
+        int next = -1;    // the frame the iterator returns next
+        int readGeneration = -1;
+        try {
+            while (true) {
+                int f, gen;
+                synchronized (this) {
+                    while (!closed && (end >= index.size() || end - playhead >= ahead)) wait();
+                    if (closed) return;
+                    f = end;
+                    gen = generation;
+                }
+                if (frames == null || gen != readGeneration || next != f) {
+                    frames = reader.frames(index.getOffset(f)).iterator();
+                    next = f;
+                    readGeneration = gen;
+                }
+                Frame frame = frames.next().top(k);
+                next++;
+                synchronized (this) {
+                    if (gen == generation && !closed) {
+                        ring[f % ring.length] = frame;
+                        end = f + 1;
+                        start = Math.max(start, end - ring.length);
+                        notifyAll();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // closing
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                failure = e;
+                notifyAll();
+            }
+        }
+    }
+}
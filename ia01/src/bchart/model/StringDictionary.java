@@ -0,0 +1,124 @@
+package bchart.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Assigns a small integer id to every distinct string and keeps one shared String for
+ * each.  Strings are looked up directly from their UTF-8 bytes, so a string that has been
+ * seen before costs no allocation at all; only new strings are decoded.
+ *
+ * Ids are assigned in the order strings are first seen, starting at 0.  Not thread safe.
+ */
+public class StringDictionary {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int[] table;       // open addressing, holds id + 1, or 0 for an empty slot
+    private byte[][] keys;     // the UTF-8 bytes of each string, by id
+    private int[] hashes;      // the hash of each string, by id
+    private String[] strings;  // the decoded string, by id
+    private int size = 0;
+
+    public StringDictionary() {
+        table = new int[INITIAL_CAPACITY * 2];
+        keys = new byte[INITIAL_CAPACITY][];
+        hashes = new int[INITIAL_CAPACITY];
+        strings = new String[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns the id of the string whose UTF-8 encoding is in buf[from, to), adding it if
+     * it hasn't been seen before.  The buffer's position is not changed.
+     *
+     * @param buf the buffer
+     * @param from the index of the first byte
+     * @param to the index after the last byte
+     * @return the id
+     */
+    public int intern(ByteBuffer buf, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) h = 31 * h + buf.get(i);
+
+        int mask = table.length - 1;
+        for (int slot = mix(h) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                byte[] bytes = new byte[to - from];
+                buf.get(from, bytes);
+                return add(slot, h, bytes);
+            }
+            int id = entry - 1;
+            if (hashes[id] == h && matches(keys[id], buf, from, to)) return id;
+        }
+    }
+
+    /**
+     * Returns the id of a string, adding it if it hasn't been seen before.
+     *
+     * @param s the string
+     * @return the id
+     */
+    public int intern(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        return intern(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * @param id an id returned by intern
+     * @return the string with that id
+     */
+    public String get(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException("no string with id " + id);
+        return strings[id];
+    }
+
+    /**
+     * @return the number of distinct strings
+     */
+    public int size() {
+        return size;
+    }
+
+    private int add(int slot, int h, byte[] bytes) {
+        if (size == strings.length) {
+            int n = size * 2;
+            keys = Arrays.copyOf(keys, n);
+            hashes = Arrays.copyOf(hashes, n);
+            strings = Arrays.copyOf(strings, n);
+        }
+        int id = size++;
+        keys[id] = bytes;
+        hashes[id] = h;
+        strings[id] = new String(bytes, StandardCharsets.UTF_8);
+        table[slot] = id + 1;
+        // Keep the table at most half full
+        if (size * 2 > table.length) rehash(table.length * 2);
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = id + 1;
+        }
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer buf, int from, int to) {
+        if (key.length != to - from) return false;
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != buf.get(from + i)) return false;
+        }
+        return true;
+    }
+
+    // Spreads the bits of a string hash, which are poor in the low bits for short strings
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
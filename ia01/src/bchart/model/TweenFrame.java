@@ -0,0 +1,159 @@
+package bchart.model;
+
+import java.util.Arrays;
+
+/**
+ * One displayed frame of an animated bar chart race: the bars that are on screen part of
+ * the way between two data frames, with interpolated values and (fractional) rank
+ * positions, sorted from the top.  A bar at position K is just below the last visible
+ * slot, so bars slide in and out of view.
+ *
+ * TweenFrames are filled in by a {@link Tweener} and are meant to be reused: filling one
+ * again allocates nothing once its arrays have grown to fit the dataset.
+ */
+public class TweenFrame {
+
+    private BarChartDataset data;
+    private int slots;
+    private int size;
+    private int[] rows = new int[0];          // a dataset row for each bar, for its name and category
+    private double[] values = new double[0];
+    private double[] positions = new double[0];
+    private String caption = "";
+
+    // Scratch space, indexed by name id: the row and the rank of each name in the two
+    // frames being interpolated, or -1, and which names have been added as bars
+    private int[][] rowOf = new int[2][0];
+    private int[][] rankOf = new int[2][0];
+    private int[] loadedFrame = {-1, -1};
+    private FrameRanking loadedRanking;
+    private int[] addedStamp = new int[0];
+    private int stamp = 0;
+
+    public TweenFrame() { }
+
+    /** @return the dataset the bars come from */
+    public BarChartDataset getDataset() { return data; }
+
+    /** @return the number of bar slots on screen (the ranking's K) */
+    public int getSlots() { return slots; }
+
+    /** @return the number of bars, which may be more than the number of slots while bars swap places */
+    public int size() { return size; }
+
+    public String getName(int i) { return data.getName(rows[i]); }
+    public String getCategory(int i) { return data.getCategory(rows[i]); }
+    public int getNameId(int i) { return data.getNameId(rows[i]); }
+    public double getValue(int i) { return values[i]; }
+
+    /** @return the bar's position from the top, in slots; 0.0 is the top slot */
+    public double getPosition(int i) { return positions[i]; }
+
+    /** @return the date of the data frame nearest to this one */
+    public String getCaption() { return caption; }
+
+    /**
+     * Fills this frame with the bars between data frames f and g, a fraction t of the way.
+     */
+    void fill(FrameRanking ranking, int f, int g, double t) {
+        prepare(ranking);
+        load(0, f);
+        load(1, g);
+
+        size = 0;
+        if (++stamp == 0) {
+            Arrays.fill(addedStamp, 0);
+            stamp = 1;
+        }
+        addBars(ranking, f, t);
+        addBars(ranking, g, t);
+        sortByPosition();
+        caption = data.getDate(t < 0.5 ? f : g);
+    }
+
+    private void addBars(FrameRanking ranking, int frame, double t) {
+        for (int rank = 0; rank < ranking.getCount(frame); rank++) {
+            int name = data.getNameId(ranking.getRow(frame, rank));
+            if (addedStamp[name] == stamp) continue;
+            addedStamp[name] = stamp;
+
+            int rowA = rowOf[0][name], rowB = rowOf[1][name];
+            // A name missing from one frame keeps its value from the other while it slides
+            double va = data.getValue(rowA >= 0 ? rowA : rowB);
+            double vb = data.getValue(rowB >= 0 ? rowB : rowA);
+            int ra = rankOf[0][name] >= 0 ? rankOf[0][name] : slots;
+            int rb = rankOf[1][name] >= 0 ? rankOf[1][name] : slots;
+            double position = ra + (rb - ra) * t;
+            if (position >= slots) continue;
+
+            rows[size] = rowB >= 0 ? rowB : rowA;
+            values[size] = va + (vb - va) * t;
+            positions[size] = position;
+            size++;
+        }
+    }
+
+    // Insertion sort, since there are only a few bars and they are nearly sorted already
+    private void sortByPosition() {
+        for (int i = 1; i < size; i++) {
+            int row = rows[i];
+            double value = values[i], position = positions[i];
+            int j = i - 1;
+            while (j >= 0 && positions[j] > position) {
+                rows[j + 1] = rows[j];
+                values[j + 1] = values[j];
+                positions[j + 1] = positions[j];
+                j--;
+            }
+            rows[j + 1] = row;
+            values[j + 1] = value;
+            positions[j + 1] = position;
+        }
+    }
+
+    private void prepare(FrameRanking ranking) {
+        data = ranking.getDataset();
+        slots = ranking.getK();
+        if (ranking != loadedRanking) {
+            loadedRanking = ranking;
+            int names = data.getNames().size();
+            for (int k = 0; k < 2; k++) {
+                if (rowOf[k].length < names) {
+                    rowOf[k] = new int[names];
+                    rankOf[k] = new int[names];
+                }
+                Arrays.fill(rowOf[k], -1);
+                Arrays.fill(rankOf[k], -1);
+                loadedFrame[k] = -1;
+            }
+            if (addedStamp.length < names) addedStamp = new int[names];
+            Arrays.fill(addedStamp, 0);
+            stamp = 0;
+        }
+        if (rows.length < 2 * slots) {
+            rows = new int[2 * slots];
+            values = new double[2 * slots];
+            positions = new double[2 * slots];
+        }
+    }
+
+    // Fills in the rows and ranks of each name in a frame, clearing those of the old frame
+    private void load(int k, int frame) {
+        if (loadedFrame[k] == frame) return;
+        FrameRanking ranking = loadedRanking;
+        int old = loadedFrame[k];
+        if (old >= 0) {
+            for (int row = data.getFrameStart(old); row < data.getFrameEnd(old); row++) {
+                rowOf[k][data.getNameId(row)] = -1;
+                rankOf[k][data.getNameId(row)] = -1;
+            }
+        }
+        for (int row = data.getFrameStart(frame); row < data.getFrameEnd(frame); row++) {
+            rowOf[k][data.getNameId(row)] = row;
+        }
+        for (int rank = 0; rank < ranking.getCount(frame); rank++) {
+            rankOf[k][data.getNameId(ranking.getRow(frame, rank))] = rank;
+        }
+        loadedFrame[k] = frame;
+    }
+}
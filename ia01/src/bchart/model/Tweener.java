@@ -0,0 +1,54 @@
+package bchart.model;
+
+/**
+ * Computes the in-between frames of a bar chart race.  Each pair of consecutive data
+ * frames is split into a fixed number of steps; at each step the bars' values and rank
+ * positions are interpolated linearly.  Tween number {@code f * steps} is exactly data
+ * frame f, and the last tween is the last data frame.
+ *
+ * A Tweener holds no mutable state, so any number of threads may use one at the same time,
+ * each filling its own {@link TweenFrame}.
+ */
+public class Tweener {
+
+    private final FrameRanking ranking;
+    private final int steps;
+
+    /**
+     * @param ranking the ranked frames to interpolate between
+     * @param steps the number of tweens from one data frame to the next, must be positive
+     * @throws IllegalArgumentException if steps is not positive
+     */
+    public Tweener(FrameRanking ranking, int steps) {
+        if (steps <= 0) throw new IllegalArgumentException("steps must be positive");
+        this.ranking = ranking;
+        this.steps = steps;
+    }
+
+    public FrameRanking getRanking() { return ranking; }
+    public int getSteps() { return steps; }
+
+    /**
+     * @return the number of tweens, or 0 if the dataset has no frames
+     */
+    public int getTweenCount() {
+        int frames = ranking.getFrameCount();
+        return frames == 0 ? 0 : (frames - 1) * steps + 1;
+    }
+
+    /**
+     * Fills a frame with the bars of one tween.
+     *
+     * @param tween the tween number, from 0 to getTweenCount() - 1
+     * @param out the frame to fill
+     * @throws IndexOutOfBoundsException if there is no such tween
+     */
+    public void compute(int tween, TweenFrame out) {
+        if (tween < 0 || tween >= getTweenCount())
+            throw new IndexOutOfBoundsException("tween " + tween + " of " + getTweenCount());
+        int f = tween / steps;
+        int step = tween % steps;
+        int g = step == 0 ? f : f + 1;
+        out.fill(ranking, f, g, step / (double)steps);
+    }
+}
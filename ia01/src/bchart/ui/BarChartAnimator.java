@@ -0,0 +1,116 @@
+package bchart.ui;
+
+import bchart.model.TweenFrame;
+import bchart.model.Tweener;
+
+import javax.swing.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a bar chart race on a {@link BarChartPanel} at a fixed frame rate, gliding
+ * between data frames.  The in-between frames are computed ahead of time by a background
+ * thread into a ring buffer of reusable {@link TweenFrame}s; a Swing timer takes one frame
+ * from the buffer per tick and the event dispatch thread only hands it to the panel and
+ * paints.  The background thread waits whenever the buffer is full.
+ *
+ * If the background thread falls behind, the panel keeps showing the last frame until the
+ * next one is ready.
+ */
+public class BarChartAnimator {
+
+    private static final int DEFAULT_FRAME_RATE = 60;
+    private static final int DEFAULT_BUFFER_SIZE = 64;
+
+    private final BarChartPanel panel;
+    private final Tweener tweener;
+    private final TweenFrame[] ring;
+    private final Thread producer;
+    private final Timer timer;
+
+    // Tweens numbered below produced are in the ring; those below consumed have been shown.
+    // Only the producer writes produced and only the event dispatch thread writes consumed.
+    private volatile long produced = 0;
+    private volatile long consumed = 0;
+    private volatile boolean stopped = false;
+
+    /**
+     * Creates an animator that plays at 60 frames per second.
+     *
+     * @param panel the panel to draw on
+     * @param tweener the frames to play
+     */
+    public BarChartAnimator(BarChartPanel panel, Tweener tweener) {
+        this(panel, tweener, DEFAULT_FRAME_RATE, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param panel      the panel to draw on
+     * @param tweener    the frames to play
+     * @param frameRate  the number of frames shown per second
+     * @param bufferSize the number of frames that may be computed ahead
+     */
+    public BarChartAnimator(BarChartPanel panel, Tweener tweener, int frameRate, int bufferSize) {
+        if (frameRate <= 0 || bufferSize <= 0)
+            throw new IllegalArgumentException("frame rate and buffer size must be positive");
+        this.panel = panel;
+        this.tweener = tweener;
+        this.ring = new TweenFrame[bufferSize];
+        for (int i = 0; i < bufferSize; i++) ring[i] = new TweenFrame();
+
+        this.producer = new Thread(this::produce, "tween-producer");
+        this.producer.setDaemon(true);
+        this.timer = new Timer(Math.max(1, 1000 / frameRate), e -> showNext());
+    }
+
+    /**
+     * Starts playing.  May be called from any thread.
+     */
+    public void start() {
+        producer.start();
+        timer.start();
+    }
+
+    /**
+     * Stops playing.  The animator can't be restarted.
+     */
+    public void stop() {
+        stopped = true;
+        timer.stop();
+        LockSupport.unpark(producer);
+    }
+
+    /**
+     * @return true once every frame has been shown
+     */
+    public boolean isFinished() {
+        return consumed == tweener.getTweenCount();
+    }
+
+    private void produce() {
+        int total = tweener.getTweenCount();
+        for (long n = 0; n < total; n++) {
+            while (n - consumed >= ring.length) {
+                if (stopped) return;
+                LockSupport.park(this);
+            }
+            if (stopped) return;
+            tweener.compute((int) n, ring[(int) (n % ring.length)]);
+            produced = n + 1;
+        }
+    }
+
+    // Runs on the event dispatch thread, once per timer tick
+    private void showNext() {
+        long next = consumed;
+        if (next == tweener.getTweenCount()) {
+            timer.stop();
+            return;
+        }
+        if (next >= produced) return;
+
+        panel.showTween(ring[(int) (next % ring.length)]);
+        consumed = next + 1;
+        LockSupport.unpark(producer);
+        panel.repaint();
+    }
+}
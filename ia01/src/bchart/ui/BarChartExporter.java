@@ -0,0 +1,162 @@
+package bchart.ui;
+
+import bchart.model.BarChartDataset;
+import bchart.model.StringDictionary;
+import bchart.model.TweenFrame;
+import bchart.model.Tweener;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Renders every frame of a bar chart race to numbered PNG files, without a screen.  Frames
+ * are painted into offscreen images by a pool of render threads, each with its own
+ * {@link BarChartPanel} and {@link TweenFrame}, and are encoded and written by a separate
+ * pool of writer threads, so rendering doesn't wait for the disk.  A fixed set of images
+ * is passed from the renderers to the writers and back, which bounds the memory used and
+ * makes the renderers wait if writing falls behind.
+ *
+ * Every panel is given the dataset's categories in the same order before rendering, so a
+ * category has the same color in every frame whichever thread paints it.
+ */
+public class BarChartExporter {
+
+    private final Tweener tweener;
+    private final int width;
+    private final int height;
+    private final int renderThreads;
+    private final int writerThreads;
+
+    /**
+     * Creates an exporter that uses every core.
+     *
+     * @param tweener the frames to export
+     * @param width   the width of each image, in pixels
+     * @param height  the height of each image, in pixels
+     */
+    public BarChartExporter(Tweener tweener, int width, int height) {
+        this(tweener, width, height, Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param tweener       the frames to export
+     * @param width         the width of each image, in pixels
+     * @param height        the height of each image, in pixels
+     * @param renderThreads the number of threads painting frames
+     * @param writerThreads the number of threads encoding and writing files
+     */
+    public BarChartExporter(Tweener tweener, int width, int height, int renderThreads, int writerThreads) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("image size must be positive");
+        if (renderThreads <= 0 || writerThreads <= 0)
+            throw new IllegalArgumentException("thread counts must be positive");
+        this.tweener = tweener;
+        this.width = width;
+        this.height = height;
+        this.renderThreads = renderThreads;
+        this.writerThreads = writerThreads;
+    }
+
+    /**
+     * Writes every frame to a directory, as frame00000.png, frame00001.png and so on.
+     * The directory is created if it doesn't exist.
+     *
+     * @param dir the directory to write to
+     * @return the number of frames written
+     * @throws IOException if a file can't be written
+     * @throws InterruptedException if interrupted while waiting for the frames
+     */
+    public int export(Path dir) throws IOException, InterruptedException {
+        Files.createDirectories(dir);
+        int total = tweener.getTweenCount();
+        String pattern = "frame%0" + Math.max(5, String.valueOf(total - 1).length()) + "d.png";
+
+        BlockingQueue<BufferedImage> images = new ArrayBlockingQueue<>(2 * (renderThreads + writerThreads));
+        while (images.remainingCapacity() > 0)
+            images.add(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ThreadLocal<Renderer> renderers = ThreadLocal.withInitial(Renderer::new);
+
+        ExecutorService render = Executors.newFixedThreadPool(renderThreads);
+        ExecutorService write = Executors.newFixedThreadPool(writerThreads);
+        try {
+            for (int n = 0; n < total; n++) {
+                int tween = n;
+                render.execute(() -> {
+                    if (failure.get() != null) return;
+                    try {
+                        BufferedImage image = images.take();
+                        renderers.get().render(tween, image);
+                        write.execute(() -> {
+                            try {
+                                if (failure.get() == null)
+                                    ImageIO.write(image, "png", dir.resolve(String.format(pattern, tween)).toFile());
+                            } catch (IOException | RuntimeException e) {
+                                failure.compareAndSet(null, e);
+                            } finally {
+                                images.add(image);
+                            }
+                        });
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+            }
+            // The writers get all of their work before the renderers finish
+            render.shutdown();
+            render.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            write.shutdown();
+            write.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            render.shutdownNow();
+            write.shutdownNow();
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof IOException) throw (IOException) t;
+        if (t instanceof RuntimeException) throw (RuntimeException) t;
+        return total;
+    }
+
+    // The panel and frame of one render thread
+    private class Renderer {
+        private final BarChartPanel panel = new BarChartPanel();
+        private final TweenFrame frame = new TweenFrame();
+
+        Renderer() {
+            BarChartDataset data = tweener.getRanking().getDataset();
+            panel.setTitle(data.getTitle());
+            panel.setXAxisLabel(data.getXAxisLabel());
+            panel.setDataSource(data.getSource());
+            panel.setSize(width, height);
+            StringDictionary categories = data.getCategories();
+            for (int i = 0; i < categories.size(); i++)
+                panel.colorFor(categories.get(i));
+        }
+
+        void render(int tween, BufferedImage image) {
+            tweener.compute(tween, frame);
+            panel.showTween(frame);
+            Graphics2D g = image.createGraphics();
+            try {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+                panel.paintComponent(g);
+            } finally {
+                g.dispose();
+            }
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package bchart.ui;
 
+import bchart.model.BarChartDataset;
+import bchart.model.Frame;
+import bchart.model.FrameRanking;
+import bchart.model.TweenFrame;
+
 import javax.swing.*;
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.TreeMap;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.util.Arrays;
+import java.util.HashMap;
 
 /**
  *  The {@code BarChartPanel} class represents a panel that displays a bar chart.
@@ -12,6 +19,9 @@ import java.util.TreeMap;
  *  The bars are drawn horizontally (in the order in which they are added from
  *  top to bottom) and colored according to the category.
  *  The name and value of the bar and drawn with the bar.
+ *  <p>
+ *  A chart can also be updated in place, bar by bar, with {@link #putBar} and
+ *  {@link #removeBar}; then only the rows that change are repainted.
  *
  *  @author Kevin Wayne with modifications by David Wolff
  */
@@ -20,17 +30,65 @@ public class BarChartPanel extends JComponent {
     // color palette for bars
     private static final Color[] COLORS = initColors();
 
+    // fonts and colors used when painting, created once
+    private static final Color GRID_COLOR = new Color(230, 230, 230);
+    private static final Font TITLE_FONT = new Font("SansSerif", Font.BOLD, 24);
+    private static final Font AXIS_LABEL_FONT = new Font("SansSerif", Font.PLAIN, 16);
+    private static final Font TICK_FONT = new Font("SansSerif", Font.PLAIN, 12);
+    private static final Font SOURCE_FONT = new Font("SansSerif", Font.PLAIN, 14);
+    private static final Font[] CAPTION_FONTS = {
+            new Font("SansSerif", Font.BOLD, 100),
+            new Font("SansSerif", Font.BOLD, 60),
+            new Font("SansSerif", Font.BOLD, 40)
+    };
+    // bar labels shrink as bars are added, but never below this many bars
+    private static final int MIN_BARS = 8;
+    private static final int MAX_BAR_FONT_SIZE = (int) Math.ceil(14 * 10.0 / MIN_BARS);
+    // layout, in pixels
+    private static final int LEFT_MARGIN = 10;
+    private static final int RIGHT_MARGIN = 80;
+    private static final int VERT_MARGIN = 10;
+    private static final int BARS_TOP = 115;
+    private static final int BAR_HEIGHT = 40;
+    private static final int BAR_MARGIN = 10;
+    private static final int CAPTION_Y = 500;
+    // labels are cached per font, and a cache is cleared once it holds this many
+    private static final int MAX_CACHED_LABELS = 4096;
+
     private String title;               // bar chart title
     private String xAxisLabel;          // x-axis label
     private String dataSource;          // data source
     private String caption;                   // caption
-    private TreeMap<String, Color> colorOf;   // map category to color
-    private ArrayList<String> names;          // list of bar names
-    private ArrayList<Integer> values;        // list of bar values
-    private ArrayList<Color> colors;          // list of bar colors
+    private HashMap<String, Color> colorOf;   // map category to color
+    private String[] names = new String[16];  // bar names
+    private int[] values = new int[16];       // bar values
+    private Color[] colors = new Color[16];   // bar colors
+    private double[] positions = new double[16]; // bar positions from the top, in slots
+    private int size = 0;                     // number of bars
+    private int slots = 0;                    // bar slots to leave room for, or 0 for one per bar
     private boolean isSetMaxValue = false;
     private int maxValue = 0;
 
+    // bars that are updated in place by name: the slot of each bar, and the layout
+    // last painted, so that a change can tell whether it moves the axis
+    private final HashMap<String, Integer> slotOf = new HashMap<>();
+    private boolean keyed = false;
+    private double layoutScale = Double.NaN;
+    private int layoutRows = 0;
+
+    // caches of laid out text, valid for one FontRenderContext
+    private FontRenderContext cachedFrc;
+    private final LabelCache titleText = new LabelCache(TITLE_FONT);
+    private final LabelCache axisLabelText = new LabelCache(AXIS_LABEL_FONT);
+    private final LabelCache tickText = new LabelCache(TICK_FONT);
+    private final LabelCache sourceText = new LabelCache(SOURCE_FONT);
+    private final LabelCache[] captionText = new LabelCache[CAPTION_FONTS.length];
+    private final LabelCache[] boldBarText = new LabelCache[MAX_BAR_FONT_SIZE + 1];
+    private final LabelCache[] plainBarText = new LabelCache[MAX_BAR_FONT_SIZE + 1];
+    // the formatted value of each bar and axis tick, reused while the value stays the same
+    private final IntLabels valueLabels = new IntLabels();
+    private final IntLabels tickLabels = new IntLabels();
+
     /**
      * Creates a new bar chart with empty title, xAxisLabel and source.
      */
@@ -39,7 +97,7 @@ public class BarChartPanel extends JComponent {
         this.xAxisLabel = "";
         this.dataSource = "";
         this.setPreferredSize(new Dimension(800, 650));
-        colorOf = new TreeMap<String, Color>();
+        colorOf = new HashMap<String, Color>();
         reset();
     }
 
@@ -94,9 +152,23 @@ public class BarChartPanel extends JComponent {
      */
     public void setCaption(String caption) {
         if (caption == null) throw new IllegalArgumentException("caption is null");
+        if (keyed && !caption.equals(this.caption))
+            repaint(0, CAPTION_Y - 100, getWidth(), 140);
         this.caption = caption;
     }
 
+    /**
+     * Leaves room for a number of bars, so that the bars keep their size as bars are
+     * added and removed.
+     *
+     * @param slots the number of bars to leave room for, or 0 for one per bar
+     */
+    public void setSlots(int slots) {
+        if (slots < 0) throw new IllegalArgumentException("slots must not be negative");
+        this.slots = slots;
+        if (keyed) layoutChanged(Double.NaN, Double.NaN);
+    }
+
     /**
      * Adds a bar to the bar chart.
      * The length of a bar is proportional to its value.
@@ -111,14 +183,189 @@ public class BarChartPanel extends JComponent {
         if (name == null) throw new IllegalArgumentException("name is null");
         if (category == null) throw new IllegalArgumentException("category is null");
         if (value <= 0) throw new IllegalArgumentException("value must be positive");
+        append(name, value, category, size);
+    }
 
-        if (!colorOf.containsKey(category)) {
-            colorOf.put(category, COLORS[colorOf.size() % COLORS.length]);
+    private void append(String name, int value, String category, double position) {
+        Color color = colorFor(category);
+        if (size == values.length) {
+            names = Arrays.copyOf(names, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+            colors = Arrays.copyOf(colors, size * 2);
+            positions = Arrays.copyOf(positions, size * 2);
         }
+        names[size] = name;
+        values[size] = value;
+        colors[size] = color;
+        positions[size] = position;
+        size++;
+    }
+
+    /**
+     * Sets the value, category and position of the bar with a given name, adding the bar
+     * if there isn't one.  This updates the chart in place: a caller only needs to put the
+     * bars that changed since the last frame, each bar keeps its slot, and only the rows
+     * that change are repainted.  While bars are put, the x-axis ends at a whole number of
+     * units, so the axis (and every bar) is only redrawn when the largest value crosses
+     * a unit boundary.  Bars added with {@link #add} can't be updated this way, and
+     * {@link #reset} removes every bar.
+     *
+     * @param name     the name of the bar
+     * @param value    the value of the bar
+     * @param category the category of the bar
+     * @param position the position of the bar from the top, in slots; 0.0 is the top slot
+     */
+    public void putBar(String name, int value, String category, double position) {
+        if (name == null) throw new IllegalArgumentException("name is null");
+        if (category == null) throw new IllegalArgumentException("category is null");
+        if (value <= 0) throw new IllegalArgumentException("value must be positive");
+        if (!(position >= 0)) throw new IllegalArgumentException("position must not be negative");
+        keyed = true;
+        Integer slot = slotOf.get(name);
+        if (slot == null) {
+            slotOf.put(name, size);
+            append(name, value, category, position);
+            layoutChanged(Double.NaN, position);
+            return;
+        }
+        int i = slot;
+        Color color = colorFor(category);
+        if (values[i] == value && positions[i] == position && colors[i] == color) return;
+        double old = positions[i];
+        values[i] = value;
+        positions[i] = position;
+        colors[i] = color;
+        layoutChanged(old, position);
+    }
+
+    /**
+     * Removes a bar that was put with {@link #putBar}, repainting only its row.
+     *
+     * @param name the name of the bar
+     * @return false if there was no such bar
+     */
+    public boolean removeBar(String name) {
+        Integer slot = slotOf.remove(name);
+        if (slot == null) return false;
+        int i = slot, last = size - 1;
+        double old = positions[i];
+        // the last bar moves into the empty slot; it is drawn by position, so it doesn't move on screen
+        if (i != last) {
+            names[i] = names[last];
+            values[i] = values[last];
+            colors[i] = colors[last];
+            positions[i] = positions[last];
+            slotOf.put(names[i], i);
+        }
+        names[last] = null;
+        size = last;
+        layoutChanged(old, Double.NaN);
+        return true;
+    }
+
+    // Repaints what a change to one bar affects: the row it left and the row it moved to,
+    // or everything if the change moved the axis or resized the bars
+    private void layoutChanged(double oldPosition, double newPosition) {
+        double scale = scaleMax();
+        int rows = rowCount();
+        if (scale != layoutScale || rows != layoutRows) {
+            layoutScale = scale;
+            layoutRows = rows;
+            repaint();
+            return;
+        }
+        if (!Double.isNaN(oldPosition)) repaint(0, barY(oldPosition), getWidth(), BAR_HEIGHT);
+        if (!Double.isNaN(newPosition)) repaint(0, barY(newPosition), getWidth(), BAR_HEIGHT);
+    }
+
+    private static int barY(double position) {
+        return BARS_TOP + (int) Math.round(position * (BAR_HEIGHT + BAR_MARGIN));
+    }
+
+    // the number of rows the bars are sized for: at least 8
+    private int rowCount() {
+        return Math.max(MIN_BARS, slots > 0 ? slots : size);
+    }
+
+    // the value at the right edge of the chart: the largest value, rounded up to a
+    // whole number of units while bars are updated in place
+    private double scaleMax() {
+        if (isSetMaxValue) return maxValue;
+        double xmax = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            if (values[i] > xmax) xmax = values[i];
+        }
+        if (keyed && size > 0) {
+            int units = getUnits(xmax);
+            xmax = Math.ceil(xmax / units) * units;
+        }
+        return xmax;
+    }
+
+    /**
+     * Returns the color of a category, giving it the next color if it doesn't have one yet.
+     * Panels that are given the same categories in the same order use the same colors.
+     */
+    Color colorFor(String category) {
         Color color = colorOf.get(category);
-        names.add(name);
-        values.add(value);
-        colors.add(color);
+        if (color == null) {
+            color = COLORS[colorOf.size() % COLORS.length];
+            colorOf.put(category, color);
+        }
+        return color;
+    }
+
+    /**
+     * Replaces the bars with the ranked records of one frame, largest first, and sets
+     * the caption to the frame's date.  This takes time proportional to the number of
+     * ranked records, however large the frame is.  Records whose value is not positive
+     * are left out.
+     *
+     * @param ranking the precomputed rankings
+     * @param frame   the frame to show
+     */
+    public void showFrame(FrameRanking ranking, int frame) {
+        BarChartDataset data = ranking.getDataset();
+        reset();
+        setCaption(data.getDate(frame));
+        for (int rank = 0; rank < ranking.getCount(frame); rank++) {
+            int row = ranking.getRow(frame, rank);
+            if (data.getValue(row) > 0)
+                add(data.getName(row), data.getValue(row), data.getCategory(row));
+        }
+    }
+
+    /**
+     * Replaces the bars with the records of a frame, in order, and sets the caption to
+     * the frame's date.  Records whose value is not positive are left out.
+     *
+     * @param frame the frame to show, such as one from {@link Frame#top}
+     */
+    public void showFrame(Frame frame) {
+        reset();
+        setCaption(frame.getDate());
+        for (int i = 0; i < frame.size(); i++) {
+            if (frame.getValue(i) > 0)
+                add(frame.getName(i), frame.getValue(i), frame.getCategory(i));
+        }
+    }
+
+    /**
+     * Replaces the bars with those of an animation frame.  Bars are drawn at their
+     * (possibly fractional) positions, with room for the frame's number of slots, so
+     * that bars glide between ranks.  Values are rounded to the nearest integer.
+     *
+     * @param tween the frame to show
+     */
+    public void showTween(TweenFrame tween) {
+        reset();
+        setCaption(tween.getCaption());
+        slots = tween.getSlots();
+        for (int i = 0; i < tween.size(); i++) {
+            int value = (int) Math.round(tween.getValue(i));
+            if (value > 0)
+                append(tween.getName(i), value, tween.getCategory(i), tween.getPosition(i));
+        }
     }
 
     /**
@@ -126,10 +373,13 @@ public class BarChartPanel extends JComponent {
      * This method is convenient when drawing an animated bar chart.
      */
     public void reset() {
-        names = new ArrayList<String>();
-        values = new ArrayList<Integer>();
-        colors = new ArrayList<Color>();
+        Arrays.fill(names, 0, size, null);
+        size = 0;
+        slots = 0;
         caption = "";
+        slotOf.clear();
+        keyed = false;
+        layoutScale = Double.NaN;
     }
 
     // compute units (multiple of 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, ...)
@@ -145,103 +395,190 @@ public class BarChartPanel extends JComponent {
     }
 
     /**
-     * Draws this bar chart.
+     * Draws this bar chart.  Fonts, text layouts and formatted numbers are cached, so
+     * repainting the same bars allocates nothing.  When only some rows need repainting,
+     * the title, tick labels and other bars outside the clip are skipped.
      */
     public void paintComponent( Graphics g ) {
         // nothing to draw
-        if (names.isEmpty()) return;
+        if (size == 0) return;
 
-        final int LEFT_MARGIN = 10;
-        final int RIGHT_MARGIN = 80;
-        final int VERT_MARGIN = 10;
         int w = getWidth();
         int h = getHeight();
         int chartWidth = w - LEFT_MARGIN - RIGHT_MARGIN;
 
         Graphics2D g2d = (Graphics2D)g;
+        FontRenderContext frc = g2d.getFontRenderContext();
+        if (!frc.equals(cachedFrc)) clearCaches(frc);
+        Rectangle clip = g2d.getClipBounds();
+        boolean drawHeader = clip == null || clip.y < BARS_TOP;
 
         // leave room for at least 8 bars
-        int numberOfBars = Math.max(8, names.size());
+        int numberOfBars = rowCount();
 
         // set the scale of the coordinate axes
-        double xmax = Double.NEGATIVE_INFINITY;
-        for (int value : values) {
-            if (value > xmax) xmax = value;
-        }
-        if (isSetMaxValue) xmax = maxValue;
+        double xmax = scaleMax();
+        layoutScale = xmax;
+        layoutRows = numberOfBars;
 
-        // draw title
-        g2d.setColor(Color.BLACK);
-        g2d.setFont(new Font("SansSerif", Font.BOLD, 24));
-        g2d.drawString(title, 45, 35);
+        if (drawHeader) {
+            // draw title
+            g2d.setColor(Color.BLACK);
+            titleText.get(g2d, title).draw(g2d, 45, 35);
 
-        // draw x-axis label
-        g2d.setColor(Color.GRAY);
-        g2d.setFont(new Font("SansSerif", Font.PLAIN, 16));
-        g2d.drawString(xAxisLabel, 10, 75);
+            // draw x-axis label
+            g2d.setColor(Color.GRAY);
+            axisLabelText.get(g2d, xAxisLabel).draw(g2d, 10, 75);
+        }
 
         // draw axes
         int units = getUnits(xmax);
-        g2d.setFont(new Font("SansSerif", Font.PLAIN, 12));
-        for (int unit = 0; unit <= xmax; unit += units) {
+        int tick = 0;
+        for (int unit = 0; unit <= xmax; unit += units, tick++) {
             int x = (int)( ((double)unit / xmax) * chartWidth + LEFT_MARGIN );
-            g2d.setColor(Color.GRAY);
-            centerText(g2d, x, 100, String.format("%,d", unit));
-            g2d.setColor(new Color(230, 230, 230));
+            if (drawHeader) {
+                g2d.setColor(Color.GRAY);
+                tickLabels.get(tick, unit, tickText, g2d).drawCentered(g2d, x, 100);
+            }
+            g2d.setColor(GRID_COLOR);
             g2d.drawLine(x, 105, x, h - VERT_MARGIN );
         }
 
         // draw caption
         g2d.setColor(Color.LIGHT_GRAY);
-        if      (caption.length() <= 4) g2d.setFont(new Font("SansSerif", Font.BOLD, 100));
-        else if (caption.length() <= 8) g2d.setFont(new Font("SansSerif", Font.BOLD, 60));
-        else                            g2d.setFont(new Font("SansSerif", Font.BOLD, 40));
-        textRight(g2d, w - RIGHT_MARGIN, 500, caption);
+        int captionSize;
+        if      (caption.length() <= 4) captionSize = 0;
+        else if (caption.length() <= 8) captionSize = 1;
+        else                            captionSize = 2;
+        captionText[captionSize].get(g2d, caption).drawRight(g2d, w - RIGHT_MARGIN, CAPTION_Y);
 
         // draw data source acknowledgment
         g2d.setColor(Color.LIGHT_GRAY);
-        g2d.setFont(new Font("SansSerif", Font.PLAIN, 14));
-        textRight(g2d, w - RIGHT_MARGIN, 550, dataSource);
+        sourceText.get(g2d, dataSource).drawRight(g2d, w - RIGHT_MARGIN, 550);
 
-        final int BAR_HEIGHT = 40;
-        final int BAR_MARGIN = 10;
+        int fontSize = (int) Math.ceil(14 * 10.0 / numberOfBars);
+        LabelCache boldText = barText(boldBarText, Font.BOLD, fontSize);
+        LabelCache plainText = barText(plainBarText, Font.PLAIN, fontSize);
         // draw bars
-        for (int i = 0; i < names.size(); i++) {
-            String name = names.get(i);
-            int value = values.get(i);
-            Color color = colors.get(i);
-            g2d.setColor(color);
+        for (int i = 0; i < size; i++) {
+            int barY = barY(positions[i]);
+            if (clip != null && (barY + BAR_HEIGHT <= clip.y || barY >= clip.y + clip.height)) continue;
+            int value = values[i];
+            g2d.setColor(colors[i]);
             int barWidth = (int)( (value / xmax) * chartWidth );
-            int barY = 115 + i * (BAR_HEIGHT + BAR_MARGIN);
             g2d.fillRect(LEFT_MARGIN, barY, barWidth, BAR_HEIGHT);
             g2d.setColor(Color.BLACK);
-            int fontSize = (int) Math.ceil(14 * 10.0 / numberOfBars);
-            g2d.setFont(new Font("SansSerif", Font.BOLD, fontSize));
-            textRight(g2d, barWidth + LEFT_MARGIN - 5, barY + BAR_HEIGHT / 2, name);
-            g2d.setFont(new Font("SansSerif", Font.PLAIN, fontSize));
+            boldText.get(g2d, names[i]).drawRight(g2d, barWidth + LEFT_MARGIN - 5, barY + BAR_HEIGHT / 2);
             g2d.setColor(Color.DARK_GRAY);
-            textLeft(g2d, barWidth + LEFT_MARGIN + 5, barY + BAR_HEIGHT / 2, String.format("%,d", value));
+            valueLabels.get(i, value, plainText, g2d).draw(g2d, barWidth + LEFT_MARGIN + 5, barY + BAR_HEIGHT / 2);
+        }
+    }
+
+    private void clearCaches(FontRenderContext frc) {
+        cachedFrc = frc;
+        titleText.clear();
+        axisLabelText.clear();
+        tickText.clear();
+        sourceText.clear();
+        for (int i = 0; i < CAPTION_FONTS.length; i++) {
+            if (captionText[i] == null) captionText[i] = new LabelCache(CAPTION_FONTS[i]);
+            else captionText[i].clear();
         }
+        for (LabelCache c : boldBarText) if (c != null) c.clear();
+        for (LabelCache c : plainBarText) if (c != null) c.clear();
+        valueLabels.clear();
+        tickLabels.clear();
     }
 
-    private void centerText( Graphics2D g2d, int x, int y, String text ) {
-        FontMetrics metrics = g2d.getFontMetrics();
-        int ws = metrics.stringWidth(text);
-        int hs = metrics.getDescent();
-        g2d.drawString(text, x - ws/2, y + hs);
+    private static LabelCache barText(LabelCache[] caches, int style, int fontSize) {
+        if (caches[fontSize] == null) caches[fontSize] = new LabelCache(new Font("SansSerif", style, fontSize));
+        return caches[fontSize];
     }
 
-    private void textRight( Graphics2D g2d, int x, int y, String text ) {
-        FontMetrics metrics = g2d.getFontMetrics();
-        int ws = metrics.stringWidth(text);
-        int hs = metrics.getDescent();
-        g2d.drawString(text, x - ws, y + hs);
+    /**
+     * A string laid out in one font.  Its width and descent are measured once.
+     */
+    private static class Label {
+        private final GlyphVector glyphs;
+        private final int width;
+        private final int descent;
+
+        Label(Graphics2D g2d, Font font, FontMetrics metrics, String text) {
+            this.glyphs = font.createGlyphVector(g2d.getFontRenderContext(), text);
+            this.width = metrics.stringWidth(text);
+            this.descent = metrics.getDescent();
+        }
+
+        void draw(Graphics2D g2d, int x, int y) {
+            g2d.drawGlyphVector(glyphs, x, y + descent);
+        }
+
+        void drawRight(Graphics2D g2d, int x, int y) {
+            g2d.drawGlyphVector(glyphs, x - width, y + descent);
+        }
+
+        void drawCentered(Graphics2D g2d, int x, int y) {
+            g2d.drawGlyphVector(glyphs, x - width / 2, y + descent);
+        }
+    }
+
+    /**
+     * The laid out strings for one font, by text.
+     */
+    private static class LabelCache {
+        private final Font font;
+        private final HashMap<String, Label> labels = new HashMap<>();
+        private FontMetrics metrics;
+
+        LabelCache(Font font) {
+            this.font = font;
+        }
+
+        Label get(Graphics2D g2d, String text) {
+            Label label = labels.get(text);
+            if (label == null) {
+                if (labels.size() >= MAX_CACHED_LABELS) labels.clear();
+                if (metrics == null) metrics = g2d.getFontMetrics(font);
+                label = new Label(g2d, font, metrics, text);
+                labels.put(text, label);
+            }
+            return label;
+        }
+
+        void clear() {
+            labels.clear();
+            metrics = null;
+        }
     }
 
-    private void textLeft( Graphics2D g2d, int x, int y, String text ) {
-        FontMetrics metrics = g2d.getFontMetrics();
-        int hs = metrics.getDescent();
-        g2d.drawString(text, x, y + hs);
+    /**
+     * Formatted numbers by position (a bar or an axis tick), each kept until the number
+     * or the font at that position changes.
+     */
+    private static class IntLabels {
+        private int[] numbers = new int[0];
+        private Label[] labels = new Label[0];
+        private LabelCache[] fonts = new LabelCache[0];
+
+        Label get(int position, int number, LabelCache font, Graphics2D g2d) {
+            if (position >= labels.length) {
+                int n = Math.max(16, position * 2);
+                numbers = Arrays.copyOf(numbers, n);
+                labels = Arrays.copyOf(labels, n);
+                fonts = Arrays.copyOf(fonts, n);
+            }
+            if (labels[position] == null || numbers[position] != number || fonts[position] != font) {
+                if (font.metrics == null) font.metrics = g2d.getFontMetrics(font.font);
+                labels[position] = new Label(g2d, font.font, font.metrics, String.format("%,d", number));
+                numbers[position] = number;
+                fonts[position] = font;
+            }
+            return labels[position];
+        }
+
+        void clear() {
+            Arrays.fill(labels, null);
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,87 @@
+package bchart.ui;
+
+import bchart.model.Frame;
+import bchart.model.FrameWindow;
+
+import javax.swing.*;
+
+/**
+ * Plays the frames of a {@link FrameWindow} on a {@link BarChartPanel}, one per timer tick.
+ * The event dispatch thread never waits for a frame to be decoded: if the next frame isn't
+ * ready, the panel keeps showing the current one and the player tries again on the next
+ * tick.  Seeking moves the playhead, and the window decodes ahead from the new position.
+ */
+public class FramePlayer {
+
+    private final BarChartPanel panel;
+    private final FrameWindow window;
+    private final Timer timer;
+    private int next = 0;       // the frame to show next; only used on the event dispatch thread
+    private int stalls = 0;
+
+    /**
+     * @param panel     the panel to draw on
+     * @param window    the frames to play
+     * @param frameRate the number of frames shown per second
+     */
+    public FramePlayer(BarChartPanel panel, FrameWindow window, int frameRate) {
+        if (frameRate <= 0) throw new IllegalArgumentException("frame rate must be positive");
+        this.panel = panel;
+        this.window = window;
+        this.timer = new Timer(Math.max(1, 1000 / frameRate), e -> showNext());
+    }
+
+    /**
+     * Starts playing from the current frame.  Call on the event dispatch thread.
+     */
+    public void start() { timer.start(); }
+
+    /**
+     * Pauses playing.  Call on the event dispatch thread.
+     */
+    public void stop() { timer.stop(); }
+
+    /**
+     * Moves playback to a frame.  Call on the event dispatch thread.
+     *
+     * @param frame the frame to show next
+     */
+    public void seek(int frame) {
+        if (frame < 0 || frame >= window.getFrameCount())
+            throw new IndexOutOfBoundsException("frame " + frame + " of " + window.getFrameCount());
+        next = frame;
+        window.poll(frame);
+    }
+
+    /**
+     * Moves playback to the frame for a date.  Call on the event dispatch thread.
+     *
+     * @param date a date in the same format as the file's
+     */
+    public void seek(String date) {
+        int frame = window.find(date);
+        if (frame >= 0) seek(frame);
+    }
+
+    /** @return the frame that will be shown next */
+    public int getPosition() { return next; }
+
+    /** @return the number of ticks on which the next frame wasn't ready */
+    public int getStalls() { return stalls; }
+
+    // Runs on the event dispatch thread, once per timer tick
+    private void showNext() {
+        if (next >= window.getFrameCount()) {
+            timer.stop();
+            return;
+        }
+        Frame frame = window.poll(next);
+        if (frame == null) {
+            stalls++;
+            return;
+        }
+        panel.showFrame(frame);
+        panel.repaint();
+        next++;
+    }
+}
@@ -0,0 +1,218 @@
+package bchart.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks of the frame index, the frame window and top-K ranking, which run without a test
+ * framework.  From the ia01 directory:
+ *
+ * <pre>
+ * javac -d out $(find src test -name "*.java")
+ * java -cp out bchart.model.FrameWindowChecks
+ * </pre>
+ *
+ * Prints "all checks passed", or fails with an AssertionError naming the check.
+ */
+public class FrameWindowChecks {
+
+    private static final int FRAMES = 50;
+    private static final int RECORDS = 5;
+    // Frames big enough that a seek usually lands while one is being decoded
+    private static final int BIG_RECORDS = 20_011;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("frame-window-checks");
+        try {
+            Path file = writeDataFile(dir.resolve("data.txt"), FRAMES, RECORDS, -1);
+            findKeyBoundaries(file, dir);
+            readsEveryFrameInOrder(file);
+            keepsFramesBehindThePlayhead(file);
+            seekJustPastTheEndKeepsTheWindow(file);
+            seekOutsideTheWindowStartsAgain(file);
+            seeksWhileDecoding(writeDataFile(dir.resolve("big.txt"), FRAMES, BIG_RECORDS, -1));
+            reportsDecodingFailures(file, dir);
+            badFileFailsBeforeOpening(dir);
+            topKeepsTiesInOrder();
+        } finally {
+            try (var paths = Files.walk(dir)) {
+                paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+            }
+        }
+        System.out.println("all checks passed");
+    }
+
+    // Frame f is dated 1900 + 10 f, and its record r has the value (r * 7 + f) % records, so
+    // the values are 0 to records - 1 (records is not a multiple of 7) and their order changes
+    // from frame to frame.  Frame badFrame, if any, has a value that isn't a number but is as
+    // long as the real one.
+    private static Path writeDataFile(Path file, int frames, int records, int badFrame) throws IOException {
+        StringBuilder b = new StringBuilder("Checks\nValue\nSource: none\n\n");
+        for (int f = 0; f < frames; f++) {
+            b.append(records).append('\n');
+            for (int r = 0; r < records; r++) {
+                String value = f == badFrame && r == 0 ? "x" : String.valueOf(value(f, r, records));
+                b.append(1900 + 10 * f).append(",Name ").append(r).append(",Country,").append(value)
+                        .append(",Category\n");
+            }
+            b.append('\n');
+        }
+        Files.write(file, b.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static int value(int f, int r, int records) {
+        return (r * 7 + f) % records;
+    }
+
+    private static void findKeyBoundaries(Path file, Path dir) throws IOException {
+        FrameIndex index = index(file);
+        check(index.size() == FRAMES, "index has every frame");
+        check(index.find("1899") == 0, "a date before the first frame finds frame 0");
+        check(index.find("1900") == 0, "the first frame's date finds it");
+        check(index.find("1909") == 0, "a date between frames finds the earlier one");
+        check(index.find("1910") == 1, "an exact date finds its frame");
+        check(index.find(String.valueOf(1900 + 10 * (FRAMES - 1))) == FRAMES - 1, "the last frame's date finds it");
+        check(index.find("9999") == FRAMES - 1, "a date after the last frame finds the last frame");
+        check(index.findKey(Long.MIN_VALUE) == 0 && index.findKey(Long.MAX_VALUE) == FRAMES - 1, "extreme keys");
+
+        FrameIndex empty = index(writeDataFile(dir.resolve("empty.txt"), 0, RECORDS, -1));
+        check(empty.size() == 0 && empty.find("1900") == -1, "an empty index finds nothing");
+    }
+
+    private static void readsEveryFrameInOrder(Path file) throws Exception {
+        try (FrameWindow window = window(file, 2, 4, 3)) {
+            for (int f = 0; f < FRAMES; f++) checkFrame(window.get(f), f, 2);
+        }
+    }
+
+    // With ahead 1 and behind 3 the ring has 5 frames, and decoding stops with the window
+    // ending just after the playhead, so after reading up to frame 30 it holds 26 to 30
+    private static void keepsFramesBehindThePlayhead(Path file) throws Exception {
+        try (FrameWindow window = window(file, 2, 1, 3)) {
+            for (int f = 0; f <= 30; f++) window.get(f);
+            Frame oldest = window.poll(26);
+            check(oldest != null, "the frames behind the playhead are kept");
+            checkFrame(oldest, 26, 2);
+            check(window.poll(25) == null, "a frame older than the ring is dropped");
+            checkFrame(window.get(25), 25, 2);
+        }
+    }
+
+    // With ahead 1 the window ends just after the playhead, so the next frame is one past
+    // its end; moving there continues decoding instead of starting again
+    private static void seekJustPastTheEndKeepsTheWindow(Path file) throws Exception {
+        try (FrameWindow window = window(file, 3, 1, 2)) {
+            window.get(10);
+            checkFrame(window.get(11), 11, 3);
+            Frame previous = window.poll(10);
+            check(previous != null, "moving just past the end keeps the decoded frames");
+            checkFrame(previous, 10, 3);
+        }
+    }
+
+    // Frames decoded before a seek must never show up after it
+    private static void seekOutsideTheWindowStartsAgain(Path file) throws Exception {
+        try (FrameWindow window = window(file, 2, 3, 2)) {
+            window.get(5);
+            check(window.poll(40) == null, "a seek far ahead starts with an empty window");
+            checkFrame(window.get(40), 40, 2);
+            checkFrame(window.get(41), 41, 2);
+            checkFrame(window.get(3), 3, 2);
+            for (int f = 4; f < 12; f++) checkFrame(window.get(f), f, 2);
+        }
+    }
+
+    // A frame decoded before a seek must be thrown away even if it finishes after it
+    private static void seeksWhileDecoding(Path file) throws Exception {
+        try (FrameWindow window = window(file, 2, 3, 2)) {
+            Random random = new Random(1);
+            for (int i = 0; i < 300; i++) {
+                int f = random.nextInt(FRAMES);
+                checkFrame(window.get(f), f, 2, BIG_RECORDS);
+            }
+        }
+    }
+
+    // The index comes from a good file, and the reader from one with a bad value in frame 7
+    private static void reportsDecodingFailures(Path file, Path dir) throws Exception {
+        Path bad = writeDataFile(dir.resolve("bad.txt"), FRAMES, RECORDS, 7);
+        check(Files.size(bad) == Files.size(file), "the bad file has the same layout");
+        try (FrameWindow window = new FrameWindow(new BarChartFileReader(bad), index(file), 2, 4, 3)) {
+            checkFrame(window.get(6), 6, 2);
+            try {
+                window.get(7);
+                throw new AssertionError("a frame that can't be decoded fails");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            try {
+                window.poll(8);
+                throw new AssertionError("the window keeps failing after a decoding failure");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+    }
+
+    private static void badFileFailsBeforeOpening(Path dir) throws Exception {
+        Path bad = dir.resolve("headless.txt");
+        Files.write(bad, "no header".getBytes(StandardCharsets.UTF_8));
+        try {
+            new FrameWindow(bad, 2, 4, 3).close();
+            throw new AssertionError("a file without a header can't be played");
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            new FrameWindow(dir.resolve("data.txt"), 0, 4, 3).close();
+            throw new AssertionError("k must be positive");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static void topKeepsTiesInOrder() {
+        int[] values = {3, 9, 3, 9, 1, 3, 9, 0};
+        int[] out = new int[5];
+        check(FrameRanking.top(values, 1, 7, 4, out, 1) == 4, "top counts the indexes it writes");
+        check(Arrays.equals(out, new int[] {0, 1, 3, 6, 2}), "top is largest first, ties in index order");
+        check(FrameRanking.top(values, 0, 8, 0, out, 0) == 0, "top of none is empty");
+        check(FrameRanking.top(values, 2, 4, 10, out, 0) == 2 && out[0] == 3 && out[1] == 2,
+                "top of a short slice has every index");
+    }
+
+    // The k records of frame f with the largest values, largest first
+    private static void checkFrame(Frame frame, int f, int k, int records) {
+        check(frame != null, "frame " + f + " is returned");
+        check(frame.getDate().equals(String.valueOf(1900 + 10 * f)), "frame " + f + " has its date, not " + frame.getDate());
+        check(frame.size() == Math.min(k, records), "frame " + f + " has k records");
+        for (int i = 0; i < frame.size(); i++) {
+            int r = Integer.parseInt(frame.getName(i).substring("Name ".length()));
+            check(frame.getValue(i) == records - 1 - i && value(f, r, records) == records - 1 - i,
+                    "frame " + f + " rank " + i);
+        }
+    }
+
+    private static void checkFrame(Frame frame, int f, int k) {
+        checkFrame(frame, f, k, RECORDS);
+    }
+
+    private static FrameIndex index(Path file) throws IOException {
+        try (BarChartFileReader reader = new BarChartFileReader(file)) {
+            return FrameIndex.build(reader, 0);
+        }
+    }
+
+    private static FrameWindow window(Path file, int k, int ahead, int behind) throws IOException {
+        return new FrameWindow(new BarChartFileReader(file), index(file), k, ahead, behind);
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) throw new AssertionError(what);
+    }
+}